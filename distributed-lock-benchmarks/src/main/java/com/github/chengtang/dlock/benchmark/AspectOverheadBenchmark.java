@@ -0,0 +1,66 @@
+package com.github.chengtang.dlock.benchmark;
+
+import com.github.chengtang.dlock.annotation.Lock;
+import com.github.chengtang.dlock.aop.DistributedLockAspect;
+import com.github.chengtang.lockkey.LockKeyParam;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 切面整体开销：同一空方法直接调用、仅代理（无通知）与经 DistributedLockAspect 加锁调用的对比
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AspectOverheadBenchmark {
+    private Service direct;
+    private Service proxied;
+    private Service locked;
+    private Long orderId;
+
+    @Setup
+    public void setup() {
+        direct = new Service();
+        proxied = new AspectJProxyFactory(new Service()).getProxy();
+        AspectJProxyFactory pf = new AspectJProxyFactory(new Service());
+        pf.addAspect(new DistributedLockAspect(new InMemoryDistributedLockClient()));
+        locked = pf.getProxy();
+        orderId = 9L;
+    }
+
+    @Benchmark
+    public Long direct() {
+        return direct.noop(orderId);
+    }
+
+    @Benchmark
+    public Long proxyOnly() {
+        return proxied.noop(orderId);
+    }
+
+    @Benchmark
+    public Long locked() {
+        return locked.noop(orderId);
+    }
+
+    public static class Service {
+        @Lock(prefix = "order", expireTime = 30, timeUnit = TimeUnit.SECONDS)
+        public Long noop(@LockKeyParam Long orderId) {
+            return orderId;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.chengtang.dlock.benchmark;
+
+import com.github.chengtang.dlock.core.DistributedLockClient;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.SpinWaitConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 基于 ConcurrentHashMap 的锁客户端，排除网络开销，只衡量锁路径本身
+ */
+public class InMemoryDistributedLockClient implements DistributedLockClient {
+    private final Map<String, String> owners = new ConcurrentHashMap<>();
+    private final AtomicLong tokens = new AtomicLong();
+
+    @Override
+    public LockHandle tryLock(String key, long leaseTime, TimeUnit unit) {
+        String token = Long.toString(tokens.incrementAndGet());
+        return owners.putIfAbsent(key, token) == null ? new LockHandle(key, token) : null;
+    }
+
+    @Override
+    public LockHandle tryLock(String key, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin) {
+        long deadline = System.nanoTime() + unit.toNanos(waitTime);
+        long intervalNanos = spin == null ? 0L : spin.unit().toNanos(spin.interval());
+        while (true) {
+            LockHandle handle = tryLock(key, leaseTime, unit);
+            if (handle != null) {
+                return handle;
+            }
+            if (System.nanoTime() >= deadline) {
+                return null;
+            }
+            if (intervalNanos > 0) {
+                LockSupport.parkNanos(intervalNanos);
+            } else {
+                Thread.yield();
+            }
+        }
+    }
+
+    @Override
+    public void unlock(LockHandle handle) {
+        owners.remove(handle.key(), handle.token());
+    }
+}
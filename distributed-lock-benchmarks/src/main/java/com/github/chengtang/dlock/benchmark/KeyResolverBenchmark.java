@@ -0,0 +1,117 @@
+package com.github.chengtang.dlock.benchmark;
+
+import com.github.chengtang.dlock.annotation.KeyEncoding;
+import com.github.chengtang.dlock.annotation.Lock;
+import com.github.chengtang.dlock.core.KeyResolver;
+import com.github.chengtang.lockkey.LockKeyParam;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各种 key 形态的构建耗时，以及长片段在 PLAIN 与 HASHED 编码下的对比
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyResolverBenchmark {
+    private Method prefixOnly;
+    private Lock prefixOnlyLock;
+    private Method paramKey;
+    private Lock paramKeyLock;
+    private Method dtoField;
+    private Lock dtoFieldLock;
+    private Method multiSpel;
+    private Lock multiSpelLock;
+    private Object[] idArgs;
+    private Object[] dtoArgs;
+    private Object[] spelArgs;
+    private Method longPlain;
+    private Lock longPlainLock;
+    private Method longHashed;
+    private Lock longHashedLock;
+    private Object[] longArgs;
+
+    @Setup
+    public void setup() throws Exception {
+        prefixOnly = Service.class.getMethod("prefixOnly", Long.class);
+        prefixOnlyLock = prefixOnly.getAnnotation(Lock.class);
+        paramKey = Service.class.getMethod("paramKey", Long.class);
+        paramKeyLock = paramKey.getAnnotation(Lock.class);
+        dtoField = Service.class.getMethod("dtoField", OrderRequest.class);
+        dtoFieldLock = dtoField.getAnnotation(Lock.class);
+        multiSpel = Service.class.getMethod("multiSpel", OrderRequest.class, Long.class);
+        multiSpelLock = multiSpel.getAnnotation(Lock.class);
+        idArgs = new Object[]{9L};
+        dtoArgs = new Object[]{new OrderRequest(1L, 9L)};
+        spelArgs = new Object[]{new OrderRequest(1L, 9L), 9L};
+        longPlain = Service.class.getMethod("longPlain", String.class, String.class);
+        longPlainLock = longPlain.getAnnotation(Lock.class);
+        longHashed = Service.class.getMethod("longHashed", String.class, String.class);
+        longHashedLock = longHashed.getAnnotation(Lock.class);
+        longArgs = new Object[]{"tenant-7f3c9e2a-4b1d-4c8e-9a6f-2d5e8b1c0f47", "sku/catalog/electronics/phones/2024/flagship-edition-512g-midnight"};
+    }
+
+    @Benchmark
+    public String prefixOnly() {
+        return KeyResolver.buildKey(prefixOnlyLock, prefixOnly, idArgs);
+    }
+
+    @Benchmark
+    public String paramKey() {
+        return KeyResolver.buildKey(paramKeyLock, paramKey, idArgs);
+    }
+
+    @Benchmark
+    public String dtoField() {
+        return KeyResolver.buildKey(dtoFieldLock, dtoField, dtoArgs);
+    }
+
+    @Benchmark
+    public String multiSpel() {
+        return KeyResolver.buildKey(multiSpelLock, multiSpel, spelArgs);
+    }
+
+    @Benchmark
+    public String longPlain() {
+        return KeyResolver.buildKey(longPlainLock, longPlain, longArgs);
+    }
+
+    @Benchmark
+    public String longHashed() {
+        return KeyResolver.buildKey(longHashedLock, longHashed, longArgs);
+    }
+
+    public static class Service {
+        @Lock(prefix = "order")
+        public void prefixOnly(Long orderId) {}
+
+        @Lock(prefix = "order")
+        public void paramKey(@LockKeyParam Long orderId) {}
+
+        @Lock(prefix = "order")
+        public void dtoField(OrderRequest req) {}
+
+        @Lock(prefix = "order", keys = {"#req.userId", "#req.orderId", "#p1"})
+        public void multiSpel(OrderRequest req, Long orderId) {}
+
+        @Lock(prefix = "order")
+        public void longPlain(@LockKeyParam String tenant, @LockKeyParam String sku) {}
+
+        @Lock(prefix = "order", keyEncoding = KeyEncoding.HASHED)
+        public void longHashed(@LockKeyParam String tenant, @LockKeyParam String sku) {}
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.chengtang.dlock.benchmark;
+
+import com.github.chengtang.dlock.annotation.SpinWaitStrategy;
+import com.github.chengtang.dlock.core.DistributedLockClient;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.SpinWaitConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 内存锁客户端的加锁/释放吞吐：单线程无竞争、4 线程竞争同一 key、4 线程各自独立 key
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LockClientBenchmark {
+    private static final SpinWaitConfig SPIN = new SpinWaitConfig(0, 0, SpinWaitStrategy.FIXED, TimeUnit.MILLISECONDS);
+
+    private final DistributedLockClient client = new InMemoryDistributedLockClient();
+
+    @State(Scope.Thread)
+    public static class ThreadKey {
+        private final String key = "bench:" + Thread.currentThread().getId();
+    }
+
+    @Benchmark
+    public void uncontended(Blackhole bh) {
+        LockHandle handle = client.tryLock("bench:single", 30, TimeUnit.SECONDS);
+        bh.consume(handle);
+        client.unlock(handle);
+    }
+
+    @Benchmark
+    @Group("contended")
+    @GroupThreads(4)
+    public boolean contended() {
+        LockHandle handle = client.tryLock("bench:shared", 1, 30, TimeUnit.SECONDS, SPIN);
+        if (handle != null) {
+            client.unlock(handle);
+        }
+        return handle != null;
+    }
+
+    @Benchmark
+    @Group("disjoint")
+    @GroupThreads(4)
+    public boolean disjoint(ThreadKey t) {
+        LockHandle handle = client.tryLock(t.key, 30, TimeUnit.SECONDS);
+        client.unlock(handle);
+        return handle != null;
+    }
+}
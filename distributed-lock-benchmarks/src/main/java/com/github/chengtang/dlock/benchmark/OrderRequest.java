@@ -0,0 +1,23 @@
+package com.github.chengtang.dlock.benchmark;
+
+import com.github.chengtang.lockkey.LockKeyParam;
+
+/**
+ * 与 sample-app 中 OrderRequest 结构一致的 DTO
+ */
+public class OrderRequest {
+    @LockKeyParam
+    private Long userId;
+    @LockKeyParam
+    private Long orderId;
+
+    public OrderRequest() {}
+    public OrderRequest(Long userId, Long orderId) {
+        this.userId = userId;
+        this.orderId = orderId;
+    }
+    public Long getUserId() { return userId; }
+    public void setUserId(Long userId) { this.userId = userId; }
+    public Long getOrderId() { return orderId; }
+    public void setOrderId(Long orderId) { this.orderId = orderId; }
+}
@@ -0,0 +1,80 @@
+package com.github.chengtang.dlock.benchmark;
+
+import com.github.chengtang.dlock.annotation.Lock;
+import com.github.chengtang.dlock.core.KeyResolver;
+import com.github.chengtang.lockkey.LockKeyParam;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.expression.spel.SpelCompilerMode;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 解释执行与编译执行的 key 构建对比（OrderRequest 的 SpEL 取值形态）
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SpelCompilerModeBenchmark {
+    @Param({"OFF", "IMMEDIATE", "MIXED"})
+    public SpelCompilerMode mode;
+
+    private Method spelKeys;
+    private Lock spelKeysLock;
+    private Method paramPath;
+    private Lock paramPathLock;
+    private Object[] args;
+
+    @Setup
+    public void setup() throws Exception {
+        String suffix = mode == SpelCompilerMode.OFF ? "Off" : mode == SpelCompilerMode.IMMEDIATE ? "Immediate" : "Mixed";
+        spelKeys = Service.class.getMethod("spelKeys" + suffix, OrderRequest.class, Long.class);
+        spelKeysLock = spelKeys.getAnnotation(Lock.class);
+        paramPath = Service.class.getMethod("paramPath" + suffix, OrderRequest.class, Long.class);
+        paramPathLock = paramPath.getAnnotation(Lock.class);
+        args = new Object[]{new OrderRequest(1L, 9L), 9L};
+    }
+
+    @Benchmark
+    public String spelKeys() {
+        return KeyResolver.buildKey(spelKeysLock, spelKeys, args);
+    }
+
+    @Benchmark
+    public String paramPath() {
+        return KeyResolver.buildKey(paramPathLock, paramPath, args);
+    }
+
+    public static class Service {
+        @Lock(keys = {"#req.userId", "#req.orderId", "#p1"})
+        public void spelKeysOff(OrderRequest req, Long orderId) {}
+
+        @Lock(keys = {"#req.userId", "#req.orderId", "#p1"}, spelCompilerMode = SpelCompilerMode.IMMEDIATE)
+        public void spelKeysImmediate(OrderRequest req, Long orderId) {}
+
+        @Lock(keys = {"#req.userId", "#req.orderId", "#p1"}, spelCompilerMode = SpelCompilerMode.MIXED)
+        public void spelKeysMixed(OrderRequest req, Long orderId) {}
+
+        @Lock
+        public void paramPathOff(@LockKeyParam("userId") OrderRequest req, @LockKeyParam Long orderId) {}
+
+        @Lock(spelCompilerMode = SpelCompilerMode.IMMEDIATE)
+        public void paramPathImmediate(@LockKeyParam("userId") OrderRequest req, @LockKeyParam Long orderId) {}
+
+        @Lock(spelCompilerMode = SpelCompilerMode.MIXED)
+        public void paramPathMixed(@LockKeyParam("userId") OrderRequest req, @LockKeyParam Long orderId) {}
+    }
+}
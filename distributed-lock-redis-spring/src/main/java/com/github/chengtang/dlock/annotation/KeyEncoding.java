@@ -0,0 +1,9 @@
+package com.github.chengtang.dlock.annotation;
+
+/**
+ * 锁 key 的编码方式
+ */
+public enum KeyEncoding {
+    PLAIN,
+    HASHED
+}
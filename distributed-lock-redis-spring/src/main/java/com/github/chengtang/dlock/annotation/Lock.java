@@ -1,6 +1,7 @@
 package com.github.chengtang.dlock.annotation;
 
 import org.springframework.core.annotation.Order;
+import org.springframework.expression.spel.SpelCompilerMode;
 
 import java.lang.annotation.Documented;
 import java.lang.annotation.ElementType;
@@ -29,5 +30,17 @@ public @interface Lock {
     SpinWaitTimeParam spinWaitTimeParam() default @SpinWaitTimeParam();
 
     String[] keys() default {};
+
+    LockMode mode() default LockMode.WRITE;
+
+    int permits() default 1;
+
+    boolean singleFlight() default false;
+
+    int singleFlightTtl() default 1;
+
+    KeyEncoding keyEncoding() default KeyEncoding.PLAIN;
+
+    SpelCompilerMode spelCompilerMode() default SpelCompilerMode.OFF;
 }
 
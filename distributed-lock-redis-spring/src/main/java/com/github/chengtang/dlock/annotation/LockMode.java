@@ -0,0 +1,11 @@
+package com.github.chengtang.dlock.annotation;
+
+/**
+ * 加锁模式
+ * WRITE：独占锁；与同一 key 的任何读锁、写锁互斥（默认）
+ * READ：共享锁；同一 key 的读锁之间并行，与写锁互斥
+ */
+public enum LockMode {
+    WRITE,
+    READ
+}
@@ -5,9 +5,15 @@ package com.github.chengtang.dlock.annotation;
  * FIXED：固定间隔；每次等待间隔不变
  * LINEAR：线性递增；每次在上次基础上 +interval
  * EXPONENTIAL：指数递增；每次在上次基础上 *2
+ * FULL_JITTER：在 [0, 指数间隔] 内随机取值
+ * DECORRELATED_JITTER：在 [interval, 上次间隔 * 3] 内随机取值
+ * ADAPTIVE：按持有者剩余持有时间的估计等待
  */
 public enum SpinWaitStrategy {
     FIXED,
     LINEAR,
-    EXPONENTIAL
+    EXPONENTIAL,
+    FULL_JITTER,
+    DECORRELATED_JITTER,
+    ADAPTIVE
 }
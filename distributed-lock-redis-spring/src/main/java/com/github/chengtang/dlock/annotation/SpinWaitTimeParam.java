@@ -15,6 +15,8 @@ public @interface SpinWaitTimeParam {
 
     int maxAttempts() default 0;
 
+    int maxInterval() default 0;
+
     SpinWaitStrategy strategy() default SpinWaitStrategy.FIXED;
 
     TimeUnit timeUnit() default TimeUnit.MILLISECONDS;
@@ -1,58 +1,238 @@
 package com.github.chengtang.dlock.aop;
 
 import com.github.chengtang.dlock.annotation.Lock;
+import com.github.chengtang.dlock.annotation.LockMode;
 import com.github.chengtang.dlock.annotation.SpinWaitTimeParam;
 import com.github.chengtang.dlock.core.DistributedLockClient;
 import com.github.chengtang.dlock.core.KeyResolver;
+import com.github.chengtang.dlock.core.LockContext;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.LockObserver;
+import com.github.chengtang.dlock.core.ReactiveDistributedLockClient;
+import com.github.chengtang.dlock.core.SingleFlightResult;
+import com.github.chengtang.dlock.core.SingleFlightResultStore;
 import com.github.chengtang.dlock.core.SpinWaitConfig;
 import lombok.extern.slf4j.Slf4j;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.lang.Nullable;
+import org.springframework.util.ClassUtils;
 
 import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Aspect
 @Slf4j
 public class DistributedLockAspect {
+    private static final boolean REACTOR_PRESENT =
+            ClassUtils.isPresent("reactor.core.publisher.Mono", DistributedLockAspect.class.getClassLoader());
+
     private final DistributedLockClient lockClient;
+    private final LockObserver observer;
+    private final boolean observing;
+    private final Map<Method, String> lockNames = new ConcurrentHashMap<>();
+    private final Map<Method, Boolean> asyncMethods = new ConcurrentHashMap<>();
+    private final Set<Method> warnedMethods = ConcurrentHashMap.newKeySet();
+    @Nullable
+    private final ReactiveLockSupport reactive;
+    private final SingleFlightSupport singleFlight;
 
     public DistributedLockAspect(DistributedLockClient lockClient) {
+        this(lockClient, LockObserver.NOOP);
+    }
+
+    public DistributedLockAspect(DistributedLockClient lockClient, LockObserver observer) {
+        this(lockClient, observer, null);
+    }
+
+    public DistributedLockAspect(DistributedLockClient lockClient, LockObserver observer,
+                                 @Nullable ReactiveDistributedLockClient reactiveClient) {
+        this(lockClient, observer, reactiveClient, null);
+    }
+
+    public DistributedLockAspect(DistributedLockClient lockClient, LockObserver observer,
+                                 @Nullable ReactiveDistributedLockClient reactiveClient,
+                                 @Nullable SingleFlightResultStore singleFlightStore) {
         this.lockClient = lockClient;
+        this.observer = Objects.requireNonNull(observer, "observer");
+        this.observing = observer != LockObserver.NOOP;
+        this.reactive = reactiveClient != null && REACTOR_PRESENT ? new ReactiveLockSupport(reactiveClient, observer) : null;
+        this.singleFlight = new SingleFlightSupport(singleFlightStore);
     }
 
     @Around("@annotation(lockAnn)")
     public Object around(ProceedingJoinPoint pjp, Lock lockAnn) throws Throwable {
         Method method = ((MethodSignature) pjp.getSignature()).getMethod();
-        String key = KeyResolver.buildKey(lockAnn, method, pjp.getArgs());
-        boolean acquired;
+        List<String> keys = KeyResolver.buildKeys(lockAnn, method, pjp.getArgs());
+        if (keys.isEmpty()) {
+            // 空集合不回退为只有前缀的全局锁
+            if (log.isDebugEnabled()) {
+                log.debug("no lock keys, proceed without lock method={}", method);
+            }
+            return pjp.proceed();
+        }
+        boolean multi = keys.size() > 1;
+        String key = multi ? LockObserver.multiKey(keys) : keys.get(0);
+        if (multi && lockAnn.permits() > 1) {
+            throw new IllegalStateException("permits > 1 is not supported for multi-key lock, keys=" + key);
+        }
+        if (lockAnn.singleFlight() && (multi || lockAnn.permits() > 1 || lockAnn.mode() != LockMode.WRITE)) {
+            throw new IllegalStateException("singleFlight requires a single-key exclusive lock, key=" + key + ", method=" + method);
+        }
         SpinWaitTimeParam spin = lockAnn.spinWaitTimeParam();
-        SpinWaitConfig spinCfg = new SpinWaitConfig(spin.interval(), spin.maxAttempts(), spin.strategy(), spin.timeUnit());
+        SpinWaitConfig spinCfg = new SpinWaitConfig(spin.interval(), spin.maxAttempts(), spin.strategy(), spin.timeUnit(), spin.maxInterval());
+        boolean stage = false;
+        if (isAsync(method)) {
+            if (multi) {
+                throw new IllegalStateException("multi-key lock is not supported for async return type, keys=" + key);
+            }
+            if (lockAnn.singleFlight()) {
+                throw new IllegalStateException("singleFlight is not supported for async return type, method=" + method);
+            }
+            if (reactive != null) {
+                return reactive.around(pjp, lockAnn, method.getReturnType(), observing ? lockName(method) : null, key, spinCfg);
+            }
+            Class<?> returnType = method.getReturnType();
+            // 只有能以 CompletableFuture 返回的类型才能推迟到异步结果完成后释放
+            stage = returnType == CompletionStage.class || returnType == CompletableFuture.class;
+            if (!stage) {
+                warnBlockingAsync(method);
+            }
+        }
+        if (lockAnn.singleFlight()) {
+            long waitNanos = lockAnn.timeUnit().toNanos(Math.max(0, lockAnn.waitTime()));
+            return singleFlight.shareLocal(key, waitNanos, () -> lockAndProceed(pjp, lockAnn, method, keys, key, spinCfg, false));
+        }
+        return lockAndProceed(pjp, lockAnn, method, keys, key, spinCfg, stage);
+    }
+
+    private Object lockAndProceed(ProceedingJoinPoint pjp, Lock lockAnn, Method method, List<String> keys, String key,
+                                  SpinWaitConfig spinCfg, boolean stage) throws Throwable {
         if (log.isDebugEnabled()) {
             log.debug("try acquire key={}, wait={} {}, expire={} {}", key, lockAnn.waitTime(), lockAnn.timeUnit(), lockAnn.expireTime(), lockAnn.timeUnit());
         }
-        if (lockAnn.waitTime() > 0) {
-            acquired = lockClient.tryLock(key, lockAnn.waitTime(), lockAnn.expireTime(), lockAnn.timeUnit(), spinCfg);
+        String name = observing ? lockName(method) : null;
+        String outerName = observing ? LockContext.bindName(name) : null;
+        try {
+            return acquireAndProceed(pjp, lockAnn, keys, key, spinCfg, name, stage);
+        } finally {
+            if (observing) {
+                LockContext.restoreName(outerName);
+            }
+        }
+    }
+
+    private Object acquireAndProceed(ProceedingJoinPoint pjp, Lock lockAnn, List<String> keys, String key,
+                                     SpinWaitConfig spinCfg, String name, boolean stage) throws Throwable {
+        boolean multi = keys.size() > 1;
+        long start = observing ? System.nanoTime() : 0L;
+        LockHandle handle;
+        boolean contended = false;
+        if (multi) {
+            handle = lockClient.tryLockAll(keys, Math.max(0, lockAnn.waitTime()), lockAnn.expireTime(), lockAnn.timeUnit(), spinCfg);
+        } else if (lockAnn.permits() > 1) {
+            handle = lockClient.tryAcquirePermit(key, lockAnn.permits(), Math.max(0, lockAnn.waitTime()), lockAnn.expireTime(), lockAnn.timeUnit(), spinCfg);
+        } else if (lockAnn.singleFlight()) {
+            // 首次尝试失败说明有并发的持有者，获得锁后先查看其发布的结果
+            handle = lockClient.tryLock(key, lockAnn.expireTime(), lockAnn.timeUnit());
+            if (handle == null && lockAnn.waitTime() > 0) {
+                contended = true;
+                handle = lockClient.tryLock(key, lockAnn.waitTime(), lockAnn.expireTime(), lockAnn.timeUnit(), spinCfg);
+            }
+        } else if (lockAnn.mode() == LockMode.READ) {
+            handle = lockClient.tryReadLock(key, Math.max(0, lockAnn.waitTime()), lockAnn.expireTime(), lockAnn.timeUnit(), spinCfg);
+        } else if (lockAnn.waitTime() > 0) {
+            handle = lockClient.tryLock(key, lockAnn.waitTime(), lockAnn.expireTime(), lockAnn.timeUnit(), spinCfg);
         } else {
-            acquired = lockClient.tryLock(key, lockAnn.expireTime(), lockAnn.timeUnit());
+            handle = lockClient.tryLock(key, lockAnn.expireTime(), lockAnn.timeUnit());
         }
-        if (!acquired) {
+        long acquiredAt = observing ? System.nanoTime() : 0L;
+        if (observing) {
+            observer.onAcquire(name, key, handle != null, acquiredAt - start);
+        }
+        if (handle == null) {
             if (log.isWarnEnabled()) {
                 log.warn("lock acquire failed key={}", key);
             }
             throw new IllegalStateException("already lock.Failed to acquire distributed lock for key=" + key);
         }
+        LockHandle outer = LockContext.bind(handle);
+        boolean deferred = false;
         try {
+            if (lockAnn.singleFlight()) {
+                SingleFlightResult shared = contended ? singleFlight.fetch(key) : null;
+                if (shared != null) {
+                    return shared.get();
+                }
+                return singleFlight.proceedAndPublish(key, lockAnn.singleFlightTtl(), lockAnn.timeUnit(), pjp::proceed);
+            }
             if (log.isDebugEnabled()) {
                 log.debug("lock acquired, proceed key={}", key);
             }
-            return pjp.proceed();
+            Object result = pjp.proceed();
+            if (stage && result != null) {
+                deferred = true;
+                LockHandle held = handle;
+                return ((CompletionStage<?>) result).toCompletableFuture().whenComplete((v, e) -> {
+                    try {
+                        release(held, multi, name, key, acquiredAt);
+                    } catch (RuntimeException re) {
+                        log.warn("release failed, lock expires with its lease key={}", key, re);
+                    }
+                });
+            }
+            return result;
         } finally {
-            if (log.isDebugEnabled()) {
-                log.debug("release lock key={}", key);
+            LockContext.restore(outer);
+            if (!deferred) {
+                release(handle, multi, name, key, acquiredAt);
             }
-            lockClient.unlock(key);
         }
     }
+
+    private void release(LockHandle handle, boolean multi, String name, String key, long acquiredAt) {
+        if (log.isDebugEnabled()) {
+            log.debug("release lock key={}", key);
+        }
+        long releaseStart = observing ? System.nanoTime() : 0L;
+        if (multi) {
+            lockClient.unlockAll(handle);
+        } else {
+            lockClient.unlock(handle);
+        }
+        if (observing) {
+            observer.onRelease(name, key, releaseStart - acquiredAt, System.nanoTime() - releaseStart);
+        }
+    }
+
+    private boolean isAsync(Method method) {
+        Boolean async = asyncMethods.get(method);
+        if (async == null) {
+            async = asyncMethods.computeIfAbsent(method, m -> CompletionStage.class.isAssignableFrom(m.getReturnType())
+                    || REACTOR_PRESENT && ReactiveLockSupport.isAsync(m.getReturnType()));
+        }
+        return async;
+    }
+
+    private void warnBlockingAsync(Method method) {
+        if (warnedMethods.add(method) && log.isWarnEnabled()) {
+            log.warn("async return type without ReactiveDistributedLockClient, lock is released on return method={}", method);
+        }
+    }
+
+    private String lockName(Method method) {
+        String name = lockNames.get(method);
+        if (name == null) {
+            name = lockNames.computeIfAbsent(method, m -> m.getDeclaringClass().getSimpleName() + "#" + m.getName());
+        }
+        return name;
+    }
 }
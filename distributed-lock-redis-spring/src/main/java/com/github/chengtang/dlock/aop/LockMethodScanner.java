@@ -0,0 +1,115 @@
+package com.github.chengtang.dlock.aop;
+
+import com.github.chengtang.dlock.annotation.Lock;
+import com.github.chengtang.dlock.annotation.LockMode;
+import com.github.chengtang.dlock.core.KeyResolver;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 启动期预热所有 @Lock 方法的 key 计划，并按 {@link Validation} 校验配置
+ */
+@Slf4j
+public class LockMethodScanner implements SmartInitializingSingleton {
+    private static final boolean REACTOR_PRESENT =
+            ClassUtils.isPresent("reactor.core.publisher.Mono", LockMethodScanner.class.getClassLoader());
+
+    private final ListableBeanFactory beanFactory;
+    private final Validation validation;
+
+    public LockMethodScanner(ListableBeanFactory beanFactory, Validation validation) {
+        this.beanFactory = Objects.requireNonNull(beanFactory, "beanFactory");
+        this.validation = Objects.requireNonNull(validation, "validation");
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        Set<Class<?>> types = new HashSet<>();
+        Set<Method> methods = new HashSet<>();
+        for (String name : beanFactory.getBeanNamesForType(Object.class, true, false)) {
+            Class<?> type;
+            try {
+                type = beanFactory.getType(name, false);
+            } catch (RuntimeException e) {
+                continue;
+            }
+            if (type == null || !types.add(ClassUtils.getUserClass(type))) {
+                continue;
+            }
+            try {
+                ReflectionUtils.doWithMethods(ClassUtils.getUserClass(type), methods::add,
+                        m -> ReflectionUtils.USER_DECLARED_METHODS.matches(m) && m.isAnnotationPresent(Lock.class));
+            } catch (LinkageError | RuntimeException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("skip lock scan bean={}, msg={}", name, e.getMessage());
+                }
+            }
+        }
+        List<String> problems = new ArrayList<>();
+        for (Method method : methods) {
+            for (String problem : validate(method.getAnnotation(Lock.class), method)) {
+                problems.add(method + ": " + problem);
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("lock methods prepared count={}, problems={}", methods.size(), problems.size());
+        }
+        if (problems.isEmpty() || validation == Validation.OFF) {
+            return;
+        }
+        if (validation == Validation.FAIL) {
+            throw new IllegalStateException("invalid @Lock configuration:\n" + String.join("\n", problems));
+        }
+        for (String problem : problems) {
+            log.warn("invalid @Lock configuration {}", problem);
+        }
+    }
+
+    public static List<String> validate(Lock lockAnn, Method method) {
+        KeyResolver.prepare(lockAnn, method);
+        List<String> problems = new ArrayList<>(KeyResolver.validate(lockAnn, method));
+        int modifiers = method.getModifiers();
+        if (Modifier.isPrivate(modifiers) || Modifier.isFinal(modifiers) || Modifier.isStatic(modifiers)) {
+            problems.add("private, final or static method cannot be proxied, lock is never applied");
+        }
+        boolean multi = KeyResolver.isMultiKey(lockAnn, method);
+        if (lockAnn.permits() < 1) {
+            problems.add("permits must be >= 1");
+        }
+        if (multi && lockAnn.permits() > 1) {
+            problems.add("permits > 1 is not supported for multi-key lock");
+        }
+        if (lockAnn.singleFlight() && (multi || lockAnn.permits() > 1 || lockAnn.mode() != LockMode.WRITE)) {
+            problems.add("singleFlight requires a single-key exclusive lock");
+        }
+        Class<?> returnType = method.getReturnType();
+        if (CompletionStage.class.isAssignableFrom(returnType)
+                || REACTOR_PRESENT && ReactiveLockSupport.isAsync(returnType)) {
+            if (multi) {
+                problems.add("multi-key lock is not supported for async return type");
+            }
+            if (lockAnn.singleFlight()) {
+                problems.add("singleFlight is not supported for async return type");
+            }
+        }
+        return problems;
+    }
+
+    public enum Validation {
+        FAIL,
+        WARN,
+        OFF
+    }
+}
@@ -0,0 +1,149 @@
+package com.github.chengtang.dlock.aop;
+
+import com.github.chengtang.dlock.annotation.Lock;
+import com.github.chengtang.dlock.core.LockContext;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.LockObserver;
+import com.github.chengtang.dlock.core.ReactiveDistributedLockClient;
+import com.github.chengtang.dlock.core.SpinWaitConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.reactivestreams.Publisher;
+import org.springframework.lang.Nullable;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 异步返回值的加锁，异步结果完成、出错或取消后才释放
+ * 单独成类，仅在 classpath 上存在 Reactor 时才会被加载
+ */
+@Slf4j
+final class ReactiveLockSupport {
+    private final ReactiveDistributedLockClient client;
+    private final LockObserver observer;
+
+    ReactiveLockSupport(ReactiveDistributedLockClient client, LockObserver observer) {
+        this.client = client;
+        this.observer = observer;
+    }
+
+    static boolean isAsync(Class<?> returnType) {
+        return Mono.class.isAssignableFrom(returnType)
+                || Flux.class.isAssignableFrom(returnType)
+                || CompletionStage.class.isAssignableFrom(returnType);
+    }
+
+    Object around(ProceedingJoinPoint pjp, Lock lockAnn, Class<?> returnType, String name, String key,
+                  SpinWaitConfig spin) {
+        if (Mono.class.isAssignableFrom(returnType)) {
+            return Mono.usingWhen(acquire(lockAnn, name, key, spin),
+                    held -> Mono.from(invoke(pjp)),
+                    held -> release(held), (held, e) -> release(held), held -> release(held));
+        }
+        if (Flux.class.isAssignableFrom(returnType)) {
+            return Flux.usingWhen(acquire(lockAnn, name, key, spin),
+                    held -> Flux.from(invoke(pjp)),
+                    held -> release(held), (held, e) -> release(held), held -> release(held));
+        }
+        // 加锁结果在 Lettuce 事件循环或定时线程上发出，方法体可能阻塞
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        acquire(lockAnn, name, key, spin).publishOn(Schedulers.boundedElastic()).subscribe(held -> {
+            CompletionStage<?> stage;
+            try {
+                stage = (CompletionStage<?>) pjp.proceed();
+            } catch (Throwable e) {
+                release(held).subscribe();
+                result.completeExceptionally(e);
+                return;
+            }
+            if (stage == null) {
+                release(held).subscribe();
+                result.complete(null);
+                return;
+            }
+            stage.whenComplete((v, e) -> release(held).doFinally(s -> {
+                if (e != null) {
+                    result.completeExceptionally(e);
+                } else {
+                    result.complete(v);
+                }
+            }).subscribe());
+        }, result::completeExceptionally);
+        return result;
+    }
+
+    private Mono<Held> acquire(Lock lockAnn, String name, String key, SpinWaitConfig spin) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            Mono<LockHandle> handle = lockAnn.waitTime() > 0
+                    ? client.tryLock(key, lockAnn.waitTime(), lockAnn.expireTime(), lockAnn.timeUnit(), spin)
+                    : client.tryLock(key, lockAnn.expireTime(), lockAnn.timeUnit());
+            return handle
+                    .map(h -> {
+                        long acquiredAt = System.nanoTime();
+                        observer.onAcquire(name, key, true, acquiredAt - start);
+                        if (log.isDebugEnabled()) {
+                            log.debug("lock acquired, proceed key={}", key);
+                        }
+                        return new Held(name, h, acquiredAt);
+                    })
+                    .switchIfEmpty(Mono.defer(() -> {
+                        observer.onAcquire(name, key, false, System.nanoTime() - start);
+                        if (log.isWarnEnabled()) {
+                            log.warn("lock acquire failed key={}", key);
+                        }
+                        return Mono.error(new IllegalStateException(
+                                "already lock.Failed to acquire distributed lock for key=" + key));
+                    }));
+        }).contextWrite(named(name));
+    }
+
+    private Mono<Void> release(Held held) {
+        return Mono.defer(() -> {
+            if (log.isDebugEnabled()) {
+                log.debug("release lock key={}", held.handle.key());
+            }
+            long releaseStart = System.nanoTime();
+            return client.unlock(held.handle)
+                    .doFinally(s -> observer.onRelease(held.name, held.handle.key(), releaseStart - held.acquiredAt,
+                            System.nanoTime() - releaseStart))
+                    .onErrorResume(e -> {
+                        log.warn("release failed, lock expires with its lease key={}", held.handle.key(), e);
+                        return Mono.empty();
+                    });
+        }).contextWrite(named(held.name));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Publisher<Object> invoke(ProceedingJoinPoint pjp) {
+        Object ret;
+        try {
+            ret = pjp.proceed();
+        } catch (Throwable e) {
+            throw Exceptions.propagate(e);
+        }
+        return ret == null ? Mono.empty() : (Publisher<Object>) ret;
+    }
+
+    private static Context named(@Nullable String name) {
+        return name == null ? Context.empty() : Context.of(LockContext.NAME_CONTEXT_KEY, name);
+    }
+
+    private static final class Held {
+        private final String name;
+        private final LockHandle handle;
+        private final long acquiredAt;
+
+        private Held(String name, LockHandle handle, long acquiredAt) {
+            this.name = name;
+            this.handle = handle;
+            this.acquiredAt = acquiredAt;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.chengtang.dlock.aop;
+
+import com.github.chengtang.dlock.core.SingleFlightResult;
+import com.github.chengtang.dlock.core.SingleFlightResultStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 单飞模式
+ * 同一实例内同一 key 的并发调用共享一个 future；跨实例时等待者复用持有者发布的结果
+ */
+@Slf4j
+final class SingleFlightSupport {
+    private final Map<String, Flight> inflight = new ConcurrentHashMap<>();
+    @Nullable
+    private final SingleFlightResultStore store;
+
+    SingleFlightSupport(@Nullable SingleFlightResultStore store) {
+        this.store = store;
+    }
+
+    /**
+     * 执行中的调用者嵌套进入同一 key 时直接执行（由锁客户端按重入处理）
+     */
+    Object shareLocal(String key, long waitNanos, Invocation invocation) throws Throwable {
+        Flight mine = new Flight();
+        Flight leader = inflight.putIfAbsent(key, mine);
+        if (leader != null) {
+            return leader.owner == Thread.currentThread() ? invocation.proceed() : await(key, leader.future, waitNanos);
+        }
+        try {
+            Object result = invocation.proceed();
+            mine.future.complete(result);
+            return result;
+        } catch (Throwable e) {
+            mine.future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(key, mine);
+        }
+    }
+
+    private static Object await(String key, CompletableFuture<Object> leader, long waitNanos) throws Throwable {
+        if (waitNanos <= 0 && !leader.isDone()) {
+            throw new IllegalStateException("already lock.Failed to acquire distributed lock for key=" + key);
+        }
+        try {
+            Object result = leader.get(Math.max(0L, waitNanos), TimeUnit.NANOSECONDS);
+            if (log.isDebugEnabled()) {
+                log.debug("single-flight local result reused key={}", key);
+            }
+            return result;
+        } catch (ExecutionException e) {
+            // 异常实例不在线程间共享
+            throw new IllegalStateException("single-flight leader failed key=" + key, e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("already lock.Failed to acquire distributed lock for key=" + key);
+        }
+    }
+
+    @Nullable
+    SingleFlightResult fetch(String key) {
+        if (store == null) {
+            return null;
+        }
+        SingleFlightResult result = store.fetch(key);
+        if (result != null && log.isDebugEnabled()) {
+            log.debug("single-flight remote result reused key={}", key);
+        }
+        return result;
+    }
+
+    Object proceedAndPublish(String key, long ttl, TimeUnit unit, Invocation invocation) throws Throwable {
+        Object result;
+        try {
+            result = invocation.proceed();
+        } catch (Throwable e) {
+            publish(key, SingleFlightResult.error(e), ttl, unit);
+            throw e;
+        }
+        publish(key, SingleFlightResult.value(result), ttl, unit);
+        return result;
+    }
+
+    private void publish(String key, SingleFlightResult result, long ttl, TimeUnit unit) {
+        if (store == null || ttl <= 0) {
+            return;
+        }
+        try {
+            store.publish(key, result, ttl, unit);
+        } catch (RuntimeException e) {
+            log.warn("single-flight publish failed key={}, msg={}", key, e.getMessage());
+        }
+    }
+
+    interface Invocation {
+        Object proceed() throws Throwable;
+    }
+
+    private static final class Flight {
+        private final Thread owner = Thread.currentThread();
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+    }
+}
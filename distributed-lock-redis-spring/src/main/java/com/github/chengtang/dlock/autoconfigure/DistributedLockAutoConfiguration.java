@@ -1,29 +1,294 @@
 package com.github.chengtang.dlock.autoconfigure;
 
 import com.github.chengtang.dlock.aop.DistributedLockAspect;
+import com.github.chengtang.dlock.aop.LockMethodScanner;
+import com.github.chengtang.dlock.core.CompositeLockObserver;
 import com.github.chengtang.dlock.core.DistributedLockClient;
+import com.github.chengtang.dlock.core.LockObserver;
+import com.github.chengtang.dlock.core.LockTokenGenerator;
+import com.github.chengtang.dlock.core.NodeLockTokenGenerator;
+import com.github.chengtang.dlock.core.PreLockingDistributedLockClient;
+import com.github.chengtang.dlock.core.ReactiveDistributedLockClient;
+import com.github.chengtang.dlock.core.SingleFlightResultStore;
+import com.github.chengtang.dlock.metrics.HotKeyProfiler;
+import com.github.chengtang.dlock.metrics.MicrometerLockObserver;
+import com.github.chengtang.dlock.redis.AllowListSerializationRedisSerializer;
+import com.github.chengtang.dlock.redis.AsyncLockReleaser;
+import com.github.chengtang.dlock.redis.LockReleaseNotifier;
+import com.github.chengtang.dlock.redis.RedisSingleFlightResultStore;
+import com.github.chengtang.dlock.redis.LockWatchdog;
+import com.github.chengtang.dlock.redis.ReactiveRedisDistributedLockClient;
 import com.github.chengtang.dlock.redis.RedisDistributedLockClient;
+import com.github.chengtang.dlock.redis.RedisRedlockNode;
+import com.github.chengtang.dlock.redis.RedlockDistributedLockClient;
+import com.github.chengtang.dlock.redis.RedlockNode;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.util.StringUtils;
 
-@AutoConfiguration
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+@AutoConfiguration(afterName = {
+        "org.springframework.boot.autoconfigure.data.redis.RedisReactiveAutoConfiguration",
+        "org.springframework.boot.actuate.autoconfigure.metrics.CompositeMeterRegistryAutoConfiguration",
+        "org.springframework.boot.actuate.autoconfigure.metrics.export.simple.SimpleMetricsExportAutoConfiguration"})
 @ConditionalOnClass(StringRedisTemplate.class)
+@EnableConfigurationProperties(DistributedLockProperties.class)
+@Slf4j
 public class DistributedLockAutoConfiguration {
 
     @Bean
     @ConditionalOnMissingBean
-    public DistributedLockClient distributedLockClient(StringRedisTemplate template) {
-        return new RedisDistributedLockClient(template);
+    public DistributedLockClient distributedLockClient(StringRedisTemplate template,
+                                                       DistributedLockProperties properties,
+                                                       ObjectProvider<LockReleaseNotifier> releaseNotifier,
+                                                       ObjectProvider<LockWatchdog> watchdog,
+                                                       ObjectProvider<LockObserver> observer,
+                                                       ObjectProvider<AsyncLockReleaser> asyncReleaser,
+                                                       LockTokenGenerator tokenGenerator) {
+        LockObserver lockObserver = composite(observer);
+        RedisDistributedLockClient redisClient = new RedisDistributedLockClient(template, releaseNotifier.getIfAvailable(),
+                watchdog.getIfAvailable(), lockObserver);
+        redisClient.setGroupKeysBySlot(properties.getMultiKey().isGroupBySlot());
+        if (properties.getFair().isEnabled() && properties.getFencing().isEnabled()) {
+            throw new IllegalStateException("distributed-lock.fair and distributed-lock.fencing cannot be enabled together");
+        }
+        redisClient.setFair(properties.getFair().isEnabled());
+        redisClient.setFencing(properties.getFencing().isEnabled());
+        redisClient.setFenceTtl(properties.getFencing().getCounterTtl().toMillis(), TimeUnit.MILLISECONDS);
+        redisClient.setAsyncReleaser(asyncReleaser.getIfAvailable());
+        redisClient.setTokenGenerator(tokenGenerator);
+        DistributedLockClient client = redisClient;
+        if (properties.getLocalPreLock().isEnabled()) {
+            client = new PreLockingDistributedLockClient(client, lockObserver);
+        }
+        return client;
     }
 
     @Bean
     @ConditionalOnMissingBean
-    public DistributedLockAspect distributedLockAspect(DistributedLockClient client) {
-        return new DistributedLockAspect(client);
+    public LockTokenGenerator lockTokenGenerator(DistributedLockProperties properties) {
+        String nodeId = properties.getToken().getNodeId();
+        return StringUtils.hasText(nodeId) ? new NodeLockTokenGenerator(nodeId) : new NodeLockTokenGenerator();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public LockWatchdog lockWatchdog(StringRedisTemplate template, DistributedLockProperties properties) {
+        DistributedLockProperties.Watchdog cfg = properties.getWatchdog();
+        LockWatchdog watchdog = new LockWatchdog(template, cfg.getLease().toMillis(), cfg.getRenewInterval().toMillis(),
+                cfg.getBatchSize());
+        watchdog.setGroupBySlot(cfg.isGroupBySlot());
+        return watchdog;
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "distributed-lock.async-release", name = "enabled", havingValue = "true")
+    public AsyncLockReleaser asyncLockReleaser(StringRedisTemplate template, DistributedLockProperties properties,
+                                               ObjectProvider<LockObserver> observer) {
+        DistributedLockProperties.AsyncRelease cfg = properties.getAsyncRelease();
+        return new AsyncLockReleaser(template, composite(observer), cfg.getQueueCapacity(),
+                cfg.getBatchSize(), cfg.getMaxDelay().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public DistributedLockAspect distributedLockAspect(DistributedLockClient client, ObjectProvider<LockObserver> observer,
+                                                       ObjectProvider<ReactiveDistributedLockClient> reactiveClient,
+                                                       ObjectProvider<SingleFlightResultStore> singleFlightStore) {
+        return new DistributedLockAspect(client, composite(observer),
+                reactiveClient.getIfAvailable(), singleFlightStore.getIfAvailable());
     }
-}
 
+    @Bean
+    @ConditionalOnMissingBean
+    public LockMethodScanner lockMethodScanner(ListableBeanFactory beanFactory, DistributedLockProperties properties) {
+        return new LockMethodScanner(beanFactory, properties.getStartup().getValidation());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "distributed-lock.startup", name = "preload-scripts", havingValue = "true")
+    public SmartInitializingSingleton distributedLockScriptLoader(DistributedLockClient client) {
+        return () -> loadScripts(client);
+    }
+
+    private static void loadScripts(DistributedLockClient client) {
+        DistributedLockClient target = client instanceof PreLockingDistributedLockClient
+                ? ((PreLockingDistributedLockClient) client).delegate() : client;
+        if (!(target instanceof RedisDistributedLockClient)) {
+            return;
+        }
+        try {
+            ((RedisDistributedLockClient) target).loadScripts();
+        } catch (RuntimeException e) {
+            log.warn("preload lock scripts failed, fall back to load on first use msg={}", e.getMessage());
+        }
+    }
+
+    static LockObserver composite(ObjectProvider<LockObserver> observers) {
+        return CompositeLockObserver.of(observers.orderedStream().collect(Collectors.toList()));
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public SingleFlightResultStore singleFlightResultStore(StringRedisTemplate template, DistributedLockProperties properties) {
+        DistributedLockProperties.SingleFlight cfg = properties.getSingleFlight();
+        RedisSerializer<Object> serializer = cfg.isJdkSerialization()
+                ? new JdkSerializationRedisSerializer()
+                : new AllowListSerializationRedisSerializer(cfg.getAllowedTypes());
+        return new RedisSingleFlightResultStore(template, serializer, ":result");
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    @ConditionalOnProperty(prefix = "distributed-lock.release-notify", name = "enabled", havingValue = "true")
+    public LockReleaseNotifier lockReleaseNotifier(DistributedLockProperties properties) {
+        DistributedLockProperties.ReleaseNotify cfg = properties.getReleaseNotify();
+        return new LockReleaseNotifier(cfg.getChannelPrefix(), cfg.getSafetyTimeout().toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(name = "distributedLockListenerContainer")
+    @ConditionalOnProperty(prefix = "distributed-lock.release-notify", name = "enabled", havingValue = "true")
+    public RedisMessageListenerContainer distributedLockListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                         LockReleaseNotifier releaseNotifier) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        releaseNotifier.setListenerContainer(container);
+        return container;
+    }
+
+    /**
+     * 成员配置类先于外层的 @Bean 方法注册，开启 Redlock 时外层基于单一连接的客户端因 @ConditionalOnMissingBean 跳过
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.lettuce.core.RedisClient")
+    @ConditionalOnProperty(prefix = "distributed-lock.redlock", name = "enabled", havingValue = "true")
+    static class RedlockConfiguration implements DisposableBean {
+        private RedlockDistributedLockClient redlock;
+
+        @Bean
+        @ConditionalOnMissingBean
+        public DistributedLockClient distributedLockClient(DistributedLockProperties properties,
+                                                           ObjectProvider<LockObserver> observer,
+                                                           LockTokenGenerator tokenGenerator) {
+            DistributedLockProperties.Redlock cfg = properties.getRedlock();
+            if (cfg.getNodes().isEmpty()) {
+                throw new IllegalStateException("distributed-lock.redlock.nodes is empty");
+            }
+            List<RedlockNode> nodes = new ArrayList<>(cfg.getNodes().size());
+            for (String url : cfg.getNodes()) {
+                LettuceConnectionFactory factory = new LettuceConnectionFactory(LettuceConnectionFactory.createRedisConfiguration(url));
+                factory.afterPropertiesSet();
+                nodes.add(new RedisRedlockNode(new StringRedisTemplate(factory), factory));
+            }
+            LockObserver lockObserver = composite(observer);
+            redlock = new RedlockDistributedLockClient(nodes, cfg.getNodeTimeout().toMillis(), TimeUnit.MILLISECONDS,
+                    cfg.getClockDriftFactor(), lockObserver);
+            redlock.setTokenGenerator(tokenGenerator);
+            redlock.loadScripts();
+            log.info("redlock enabled nodes={}, quorum={}", nodes.size(), redlock.quorum());
+            return properties.getLocalPreLock().isEnabled() ? new PreLockingDistributedLockClient(redlock, lockObserver) : redlock;
+        }
+
+        @Override
+        public void destroy() {
+            if (redlock != null) {
+                redlock.shutdown();
+            }
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "reactor.core.publisher.Mono")
+    @ConditionalOnBean(ReactiveStringRedisTemplate.class)
+    static class ReactiveConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean
+        public ReactiveDistributedLockClient reactiveDistributedLockClient(ReactiveStringRedisTemplate template,
+                                                                           ObjectProvider<LockReleaseNotifier> releaseNotifier,
+                                                                           ObjectProvider<LockWatchdog> watchdog,
+                                                                           ObjectProvider<LockObserver> observer,
+                                                                           LockTokenGenerator tokenGenerator) {
+            ReactiveRedisDistributedLockClient client = new ReactiveRedisDistributedLockClient(template,
+                    releaseNotifier.getIfAvailable(), watchdog.getIfAvailable(), composite(observer));
+            client.setTokenGenerator(tokenGenerator);
+            return client;
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnProperty(prefix = "distributed-lock.hot-keys", name = "enabled", havingValue = "true")
+    static class HotKeyConfiguration implements DisposableBean {
+        private ObjectName registered;
+
+        @Bean
+        @ConditionalOnMissingBean
+        public HotKeyProfiler hotKeyProfiler(DistributedLockProperties properties) {
+            DistributedLockProperties.HotKeys cfg = properties.getHotKeys();
+            HotKeyProfiler profiler = new HotKeyProfiler(cfg.getCapacity(), cfg.getTopK(), cfg.getHalfLife().toMillis(),
+                    TimeUnit.MILLISECONDS);
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(HotKeyProfiler.OBJECT_NAME);
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(profiler, name);
+                    registered = name;
+                } else {
+                    log.warn("hot key profiler MBean already registered, skip name={}", name);
+                }
+            } catch (JMException e) {
+                log.warn("register hot key profiler MBean failed msg={}", e.getMessage());
+            }
+            return profiler;
+        }
+
+        @Override
+        public void destroy() throws JMException {
+            if (registered != null) {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registered);
+            }
+        }
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    @ConditionalOnBean(type = "io.micrometer.core.instrument.MeterRegistry")
+    @ConditionalOnProperty(prefix = "distributed-lock.metrics", name = "enabled", havingValue = "true", matchIfMissing = true)
+    static class MetricsConfiguration {
+
+        @Bean
+        @ConditionalOnMissingBean(value = LockObserver.class, ignored = HotKeyProfiler.class)
+        public LockObserver lockObserver(MeterRegistry registry) {
+            return new MicrometerLockObserver(registry);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.github.chengtang.dlock.autoconfigure;
+
+import com.github.chengtang.dlock.aop.LockMethodScanner;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "distributed-lock")
+public class DistributedLockProperties {
+    private final ReleaseNotify releaseNotify = new ReleaseNotify();
+    private final Watchdog watchdog = new Watchdog();
+    private final LocalPreLock localPreLock = new LocalPreLock();
+    private final Metrics metrics = new Metrics();
+    private final MultiKey multiKey = new MultiKey();
+    private final Fair fair = new Fair();
+    private final Fencing fencing = new Fencing();
+    private final Token token = new Token();
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final HotKeys hotKeys = new HotKeys();
+    private final Startup startup = new Startup();
+    private final AsyncRelease asyncRelease = new AsyncRelease();
+    private final Redlock redlock = new Redlock();
+
+    @Getter
+    @Setter
+    public static class ReleaseNotify {
+        private boolean enabled = false;
+        private String channelPrefix = "dlock:release:";
+        private Duration safetyTimeout = Duration.ofMillis(200);
+    }
+
+    @Getter
+    @Setter
+    public static class Watchdog {
+        private Duration lease = Duration.ofSeconds(30);
+        private Duration renewInterval = Duration.ofSeconds(10);
+        private int batchSize = 500;
+        private boolean groupBySlot = false;
+    }
+
+    @Getter
+    @Setter
+    public static class LocalPreLock {
+        private boolean enabled = false;
+    }
+
+    @Getter
+    @Setter
+    public static class Metrics {
+        private boolean enabled = true;
+    }
+
+    @Getter
+    @Setter
+    public static class MultiKey {
+        private boolean groupBySlot = false;
+    }
+
+    @Getter
+    @Setter
+    public static class Fair {
+        private boolean enabled = false;
+    }
+
+    @Getter
+    @Setter
+    public static class Fencing {
+        private boolean enabled = false;
+        private Duration counterTtl = Duration.ofDays(30);
+    }
+
+    @Getter
+    @Setter
+    public static class Token {
+        private String nodeId;
+    }
+
+    @Getter
+    @Setter
+    public static class SingleFlight {
+        private List<String> allowedTypes = new ArrayList<>();
+        private boolean jdkSerialization = false;
+    }
+
+    @Getter
+    @Setter
+    public static class Startup {
+        private LockMethodScanner.Validation validation = LockMethodScanner.Validation.WARN;
+        private boolean preloadScripts = false;
+    }
+
+    @Getter
+    @Setter
+    public static class AsyncRelease {
+        private boolean enabled = false;
+        private int queueCapacity = 10_000;
+        private int batchSize = 128;
+        private Duration maxDelay = Duration.ofMillis(2);
+    }
+
+    @Getter
+    @Setter
+    public static class Redlock {
+        private boolean enabled = false;
+        private List<String> nodes = new ArrayList<>();
+        private Duration nodeTimeout = Duration.ofMillis(100);
+        private double clockDriftFactor = 0.01;
+    }
+
+    @Getter
+    @Setter
+    public static class HotKeys {
+        private boolean enabled = false;
+        private int capacity = 256;
+        private int topK = 20;
+        private Duration halfLife = Duration.ofMinutes(1);
+    }
+}
@@ -0,0 +1,63 @@
+package com.github.chengtang.dlock.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 依次转发给多个观测者
+ */
+public final class CompositeLockObserver implements LockObserver {
+    private final LockObserver[] observers;
+
+    private CompositeLockObserver(List<LockObserver> observers) {
+        this.observers = observers.toArray(new LockObserver[0]);
+    }
+
+    public static LockObserver of(List<LockObserver> observers) {
+        List<LockObserver> active = new ArrayList<>(observers.size());
+        for (LockObserver observer : observers) {
+            if (observer != LockObserver.NOOP) {
+                active.add(observer);
+            }
+        }
+        if (active.isEmpty()) {
+            return LockObserver.NOOP;
+        }
+        return active.size() == 1 ? active.get(0) : new CompositeLockObserver(active);
+    }
+
+    @Override
+    public void onAcquire(String name, String key, boolean acquired, long waitNanos) {
+        for (LockObserver observer : observers) {
+            observer.onAcquire(name, key, acquired, waitNanos);
+        }
+    }
+
+    @Override
+    public void onRelease(String name, String key, long holdNanos, long releaseNanos) {
+        for (LockObserver observer : observers) {
+            observer.onRelease(name, key, holdNanos, releaseNanos);
+        }
+    }
+
+    @Override
+    public void onAttempts(String name, String key, int attempts, boolean acquired) {
+        for (LockObserver observer : observers) {
+            observer.onAttempts(name, key, attempts, acquired);
+        }
+    }
+
+    @Override
+    public void onLocalContention(String name, String key) {
+        for (LockObserver observer : observers) {
+            observer.onLocalContention(name, key);
+        }
+    }
+
+    @Override
+    public void onReleaseMissed(String name, String key) {
+        for (LockObserver observer : observers) {
+            observer.onReleaseMissed(name, key);
+        }
+    }
+}
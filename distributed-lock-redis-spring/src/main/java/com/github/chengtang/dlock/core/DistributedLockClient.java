@@ -1,12 +1,56 @@
 package com.github.chengtang.dlock.core;
 
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
 
 public interface DistributedLockClient {
-    boolean tryLock(String key, long leaseTime, TimeUnit unit);
+    @Nullable
+    LockHandle tryLock(String key, long leaseTime, TimeUnit unit);
 
-    boolean tryLock(String key, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin);
+    @Nullable
+    LockHandle tryLock(String key, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin);
 
-    void unlock(String key);
-}
+    void unlock(LockHandle handle);
+
+    @Nullable
+    default LockHandle tryReadLock(String key, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin) {
+        return waitTime > 0 ? tryLock(key, waitTime, leaseTime, unit, spin) : tryLock(key, leaseTime, unit);
+    }
 
+    @Nullable
+    default LockHandle tryAcquirePermit(String key, int permits, long waitTime, long leaseTime, TimeUnit unit,
+                                        SpinWaitConfig spin) {
+        return waitTime > 0 ? tryLock(key, waitTime, leaseTime, unit, spin) : tryLock(key, leaseTime, unit);
+    }
+
+    @Nullable
+    default LockHandle tryLockAll(List<String> keys, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin) {
+        long deadline = System.nanoTime() + unit.toNanos(waitTime);
+        List<LockHandle> acquired = new ArrayList<>(keys.size());
+        for (String key : new TreeSet<>(keys)) {
+            long remaining = deadline - System.nanoTime();
+            LockHandle handle = remaining > 0
+                    ? tryLock(key, remaining, leaseTime < 0 ? leaseTime : unit.toNanos(leaseTime), TimeUnit.NANOSECONDS, spin)
+                    : tryLock(key, leaseTime, unit);
+            if (handle == null) {
+                for (int i = acquired.size() - 1; i >= 0; i--) {
+                    unlock(acquired.get(i));
+                }
+                return null;
+            }
+            acquired.add(handle);
+        }
+        return acquired.isEmpty() ? null : LockHandle.of(acquired);
+    }
+
+    default void unlockAll(LockHandle handle) {
+        List<LockHandle> parts = handle.parts();
+        for (int i = parts.size() - 1; i >= 0; i--) {
+            unlock(parts.get(i));
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.github.chengtang.dlock.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按 key 统计持有时长的滑动平均，供 ADAPTIVE 自旋估计剩余持有时间
+ */
+public final class HoldTimeEstimator {
+    private final Map<String, Long> averages;
+
+    public HoldTimeEstimator(int maxKeys) {
+        this.averages = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > maxKeys;
+            }
+        };
+    }
+
+    public void record(String key, long holdNanos) {
+        synchronized (averages) {
+            averages.merge(key, holdNanos, (avg, sample) -> avg + (sample - avg) / 8);
+        }
+    }
+
+    public long remainingNanos(String key, long waitedNanos) {
+        Long avg;
+        synchronized (averages) {
+            avg = averages.get(key);
+        }
+        return avg == null ? 0L : Math.max(0L, avg / 2 - waitedNanos);
+    }
+}
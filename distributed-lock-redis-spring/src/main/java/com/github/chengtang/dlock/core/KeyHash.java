@@ -0,0 +1,95 @@
+package com.github.chengtang.dlock.core;
+
+/**
+ * 流式 MurmurHash3 x64 128 位哈希，等同于对输入字符的 UTF-16LE 编码计算
+ */
+final class KeyHash {
+    private static final long C1 = 0x87c37b91114253d5L;
+    private static final long C2 = 0x4cf5ad432745937fL;
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    static final int ENCODED_LENGTH = 22;
+
+    private long h1;
+    private long h2;
+    private long k1;
+    private long k2;
+    private int chars;
+    private long length;
+
+    void put(CharSequence s) {
+        for (int i = 0, n = s.length(); i < n; i++) {
+            put(s.charAt(i));
+        }
+    }
+
+    void put(char c) {
+        if (chars < 4) {
+            k1 |= (long) c << (chars << 4);
+        } else {
+            k2 |= (long) c << ((chars - 4) << 4);
+        }
+        length += 2;
+        if (++chars == 8) {
+            mixBlock();
+            k1 = 0;
+            k2 = 0;
+            chars = 0;
+        }
+    }
+
+    private void mixBlock() {
+        h1 ^= mixK1(k1);
+        h1 = Long.rotateLeft(h1, 27);
+        h1 += h2;
+        h1 = h1 * 5 + 0x52dce729;
+        h2 ^= mixK2(k2);
+        h2 = Long.rotateLeft(h2, 31);
+        h2 += h1;
+        h2 = h2 * 5 + 0x38495ab5;
+    }
+
+    void appendTo(StringBuilder sb) {
+        if (chars > 0) {
+            h1 ^= mixK1(k1);
+            h2 ^= mixK2(k2);
+        }
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix(h1);
+        h2 = fmix(h2);
+        h1 += h2;
+        h2 += h1;
+        encode(h1, sb);
+        encode(h2, sb);
+    }
+
+    private static void encode(long v, StringBuilder sb) {
+        for (int shift = 0; shift < 64; shift += 6) {
+            sb.append(ALPHABET[(int) (v >>> shift) & 63]);
+        }
+    }
+
+    private static long mixK1(long k) {
+        k *= C1;
+        k = Long.rotateLeft(k, 31);
+        return k * C2;
+    }
+
+    private static long mixK2(long k) {
+        k *= C2;
+        k = Long.rotateLeft(k, 33);
+        return k * C1;
+    }
+
+    private static long fmix(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
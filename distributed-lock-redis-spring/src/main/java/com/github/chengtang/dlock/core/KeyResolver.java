@@ -1,155 +1,366 @@
 package com.github.chengtang.dlock.core;
 
+import com.github.chengtang.dlock.annotation.KeyEncoding;
 import com.github.chengtang.dlock.annotation.Lock;
 import com.github.chengtang.lockkey.LockKeyParam;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.expression.EvaluationContext;
 import org.springframework.expression.Expression;
 import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.SpelCompilerMode;
+import org.springframework.expression.spel.SpelEvaluationException;
+import org.springframework.expression.spel.SpelMessage;
+import org.springframework.expression.spel.SpelNode;
+import org.springframework.expression.spel.SpelParserConfiguration;
+import org.springframework.expression.spel.ast.VariableReference;
+import org.springframework.expression.spel.standard.SpelExpression;
 import org.springframework.expression.spel.standard.SpelExpressionParser;
 import org.springframework.expression.spel.support.StandardEvaluationContext;
 import org.springframework.lang.Nullable;
 
-import java.lang.reflect.Field;
+import java.lang.reflect.Array;
 import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 public final class KeyResolver {
     private static final ExpressionParser PARSER = new SpelExpressionParser();
+    private static final Map<SpelCompilerMode, ExpressionParser> PARSERS = new EnumMap<>(SpelCompilerMode.class);
     private static final DefaultParameterNameDiscoverer NAME_DISCOVERER = new DefaultParameterNameDiscoverer();
+    private static final ClassValue<Map<Method, KeyPlan>> PLANS = new ClassValue<Map<Method, KeyPlan>>() {
+        @Override
+        protected Map<Method, KeyPlan> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+    private static final ClassValue<FieldSlot[]> FIELD_SLOTS = new ClassValue<FieldSlot[]>() {
+        @Override
+        protected FieldSlot[] computeValue(Class<?> type) {
+            return scanFields(type);
+        }
+    };
+    private static final FieldSlot[] NO_FIELDS = new FieldSlot[0];
+
+    static {
+        for (SpelCompilerMode mode : SpelCompilerMode.values()) {
+            PARSERS.put(mode, mode == SpelCompilerMode.OFF ? PARSER
+                    : new SpelExpressionParser(new SpelParserConfiguration(mode, null)));
+        }
+    }
 
     private KeyResolver() {
     }
 
     public static String buildKey(Lock lockAnn, Method method, Object[] args) {
-        List<String> parts = new ArrayList<>();
-        if (lockAnn.prefix() != null && !lockAnn.prefix().trim().isEmpty()) {
-            parts.add(lockAnn.prefix());
+        KeyPlan plan = plan(lockAnn, method);
+        KeyBuilder builder = new KeyBuilder(plan);
+        extractKeyParams(plan, args, builder);
+        if (plan.keys.length > 0) {
+            extractSpelParts(plan, args, builder);
+        }
+        return builder.build();
+    }
+
+    public static List<String> buildKeys(Lock lockAnn, Method method, Object[] args) {
+        KeyPlan plan = plan(lockAnn, method);
+        if (!plan.multi) {
+            return Collections.singletonList(buildKey(lockAnn, method, args));
+        }
+        List<PartList> heads = new ArrayList<>();
+        PartList head = new PartList();
+        if (plan.prefix != null) {
+            head.add(plan.prefix);
+        }
+        heads.add(head);
+        PartList parts = new PartList();
+        for (int i = 0; i < plan.params.length; i++) {
+            if (!plan.expand[i]) {
+                extractKeyParam(plan.params[i], args[i], parts);
+                continue;
+            }
+            List<PartList> values = expandKeyParam(plan.params[i], args[i]);
+            if (values.isEmpty()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("empty @LockKeyParam collection at parameter {}, no lock keys method={}", i, method);
+                }
+                return Collections.emptyList();
+            }
+            heads = product(heads, parts, values);
+            parts.clear();
+        }
+        if (plan.keys.length > 0) {
+            extractSpelParts(plan, args, parts);
+        }
+        TreeSet<String> keys = new TreeSet<>();
+        for (PartList h : heads) {
+            h.addAll(parts);
+            String key = String.join(plan.delimiter, h);
+            keys.add(plan.hashed ? hash(plan, key) : key);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("built lock keys={}", keys);
+        }
+        return new ArrayList<>(keys);
+    }
+
+    /**
+     * 按片段而非拼接后的字符串组合，空字符串片段与 {@link KeyBuilder} 一样保留为一段
+     */
+    private static List<PartList> product(List<PartList> heads, List<String> fixed, List<PartList> values) {
+        List<PartList> out = new ArrayList<>(heads.size() * values.size());
+        for (PartList head : heads) {
+            for (PartList value : values) {
+                PartList key = new PartList();
+                key.addAll(head);
+                key.addAll(fixed);
+                key.addAll(value);
+                out.add(key);
+            }
+        }
+        return out;
+    }
+
+    private static String hash(KeyPlan plan, String key) {
+        int start = plan.prefix == null ? 0 : plan.prefix.length() + plan.delimiter.length();
+        if (start > key.length()) {
+            return key;
+        }
+        StringBuilder sb = new StringBuilder(start + KeyHash.ENCODED_LENGTH).append(key, 0, start);
+        KeyHash hash = new KeyHash();
+        hash.put(key.substring(start));
+        hash.appendTo(sb);
+        String hashed = sb.toString();
+        if (log.isDebugEnabled()) {
+            log.debug("hashed lock key={}, source={}", hashed, key);
+        }
+        return hashed;
+    }
+
+    private static List<PartList> expandKeyParam(PropertyPath path, @Nullable Object argVal) {
+        if (argVal == null) {
+            return Collections.emptyList();
+        }
+        Collection<?> elements;
+        if (argVal instanceof Collection) {
+            elements = (Collection<?>) argVal;
+        } else {
+            int length = Array.getLength(argVal);
+            List<Object> list = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                list.add(Array.get(argVal, i));
+            }
+            elements = list;
+        }
+        List<PartList> values = new ArrayList<>(elements.size());
+        for (Object element : elements) {
+            PartList parts = new PartList();
+            extractKeyParam(path, element, parts);
+            if (!parts.isEmpty()) {
+                values.add(parts);
+            }
+        }
+        return values;
+    }
+
+    public static void prepare(Lock lockAnn, Method method) {
+        KeyPlan plan = plan(lockAnn, method);
+        for (Class<?> type : plan.scannedTypes) {
+            fieldSlots(type);
+        }
+    }
+
+    public static boolean isMultiKey(Lock lockAnn, Method method) {
+        return plan(lockAnn, method).multi;
+    }
+
+    public static List<String> validate(Lock lockAnn, Method method) {
+        KeyPlan plan = plan(lockAnn, method);
+        List<String> problems = new ArrayList<>();
+        Set<String> variables = new HashSet<>();
+        variables.add("args");
+        for (int i = 0; i < method.getParameterCount(); i++) {
+            variables.add("p" + i);
+            variables.add("a" + i);
+            variables.add("arg" + i);
+        }
+        if (plan.parameterNames != null) {
+            variables.addAll(Arrays.asList(plan.parameterNames));
+        }
+        for (String keyExpr : lockAnn.keys()) {
+            if (keyExpr == null || keyExpr.trim().isEmpty()) {
+                continue;
+            }
+            Expression expression;
+            try {
+                expression = PARSER.parseExpression(keyExpr);
+            } catch (Exception e) {
+                problems.add("unparsable key expression '" + keyExpr + "': " + e.getMessage());
+                continue;
+            }
+            if (expression instanceof SpelExpression) {
+                List<String> refs = new ArrayList<>();
+                collectVariables(((SpelExpression) expression).getAST(), refs);
+                for (String ref : refs) {
+                    if (!variables.contains(ref)) {
+                        problems.add("key expression '" + keyExpr + "' references unknown variable #" + ref
+                                + (plan.parameterNames == null ? " (parameter names not discoverable, compile with -parameters or use #p0)" : ""));
+                    }
+                }
+            }
+        }
+        Parameter[] parameters = method.getParameters();
+        for (int i = 0; i < parameters.length; i++) {
+            PropertyPath path = plan.params[i];
+            if (path != null && !path.isEmpty() && path.expression == null) {
+                problems.add("unparsable @LockKeyParam path '" + path.path + "' on parameter " + i);
+            }
+        }
+        boolean annotated = false;
+        for (PropertyPath path : plan.params) {
+            annotated |= path != null;
+        }
+        if (plan.keys.length == 0 && !annotated) {
+            boolean fields = false;
+            for (Class<?> type : plan.scannedTypes) {
+                fields |= fieldSlots(type).length > 0;
+            }
+            // 只有前缀的全局锁（如定时任务互斥）是合法用法，只做提示
+            if (!fields && log.isInfoEnabled()) {
+                log.info("lock key has no keys or @LockKeyParam source, all calls share key '{}' method={}",
+                        plan.prefix == null ? "" : plan.prefix, method);
+            }
         }
-        List<String> paramParts = extractKeyParams(method, args);
+        return problems;
+    }
 
-        String[] names = NAME_DISCOVERER.getParameterNames(method);
+    private static void collectVariables(SpelNode node, List<String> refs) {
+        if (node instanceof VariableReference) {
+            String name = node.toStringAST().substring(1);
+            if (!"this".equals(name) && !"root".equals(name)) {
+                refs.add(name);
+            }
+        }
+        for (int i = 0; i < node.getChildCount(); i++) {
+            collectVariables(node.getChild(i), refs);
+        }
+    }
+
+    private static KeyPlan plan(Lock lockAnn, Method method) {
+        Map<Method, KeyPlan> plans = PLANS.get(method.getDeclaringClass());
+        KeyPlan plan = plans.get(method);
+        if (plan == null) {
+            plan = plans.computeIfAbsent(method, m -> new KeyPlan(lockAnn, m));
+        }
+        return plan;
+    }
+
+    private static void extractSpelParts(KeyPlan plan, Object[] args, Parts parts) {
         StandardEvaluationContext ctx = new StandardEvaluationContext();
-        java.util.Map<String, Object> varMap = new java.util.HashMap<>();
+        String[] names = plan.parameterNames;
         if (names != null) {
             for (int i = 0; i < names.length; i++) {
                 ctx.setVariable(names[i], args[i]);
-                varMap.put(names[i], args[i]);
             }
         }
         for (int i = 0; i < args.length; i++) {
             ctx.setVariable("p" + i, args[i]);
             ctx.setVariable("a" + i, args[i]);
             ctx.setVariable("arg" + i, args[i]);
-            varMap.put("p" + i, args[i]);
-            varMap.put("a" + i, args[i]);
-            varMap.put("arg" + i, args[i]);
         }
         ctx.setVariable("args", args);
-        varMap.put("args", args);
-        List<String> spelParts = new ArrayList<>();
-        for (String keyExpr : lockAnn.keys()) {
-            if (keyExpr != null && !keyExpr.trim().isEmpty()) {
+        int before = parts.size();
+        for (KeyExpression keyExpr : plan.keys) {
+            if (keyExpr.expression != null) {
                 try {
-                    Expression exp = PARSER.parseExpression(keyExpr);
-                    Object val = exp.getValue(ctx);
+                    Object val = getValue(keyExpr.expression, ctx);
                     if (val != null) {
-                        spelParts.add(String.valueOf(val));
+                        parts.append(String.valueOf(val));
                     }
-                } catch (Exception ignored) {
-                }
-                if (spelParts.isEmpty()) {
-                    String expr = keyExpr.trim();
-                    if (expr.startsWith("#")) {
-                        expr = expr.substring(1);
-                    }
-                    String[] tokens = expr.split("\\.");
-                    if (tokens.length > 0) {
-                        Object base = varMap.get(tokens[0]);
-                        if (base != null) {
-                            Object v = base;
-                            for (int i = 1; i < tokens.length; i++) {
-                                v = readProperty(v, tokens[i]);
-                                if (v == null) break;
-                            }
-                            if (v != null) {
-                                spelParts.add(String.valueOf(v));
-                            }
-                        }
+                } catch (Exception e) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("evaluate key expression failed, fall back to property path expr={}, msg={}",
+                                keyExpr.expression.getExpressionString(), e.getMessage());
                     }
                 }
             }
-        }
-        parts.addAll(paramParts);
-        parts.addAll(spelParts);
-        String built = String.join(lockAnn.delimiter(), parts);
-        if (log.isDebugEnabled()) {
-            log.debug("built lock key={}, parts={}", built, parts);
-        }
-        return built;
-    }
-
-    private static List<String> extractKeyParams(Method method, Object[] args) {
-        List<String> parts = new ArrayList<>();
-        java.lang.reflect.Parameter[] params = method.getParameters();
-        for (int i = 0; i < params.length; i++) {
-            java.lang.reflect.Parameter p = params[i];
-            LockKeyParam ann = p.getAnnotation(LockKeyParam.class);
-            if (ann != null) {
-                Object argVal = args[i];
-                String path = sanitize(ann.value());
-                if (argVal == null) continue;
-                if (path.isEmpty()) {
-                    if (isSimple(argVal)) {
-                        parts.add(String.valueOf(argVal));
-                    } else {
-                        parts.addAll(extractAnnotatedFields(argVal));
+            if (parts.size() == before) {
+                Object base = ctx.lookupVariable(keyExpr.variable);
+                if (base != null) {
+                    Object v = base;
+                    for (PropertyPath property : keyExpr.properties) {
+                        v = readProperty(v, property);
+                        if (v == null) break;
                     }
-                } else {
-                    Object v = readProperty(argVal, path);
                     if (v != null) {
-                        parts.add(String.valueOf(v));
+                        parts.append(String.valueOf(v));
                     }
                 }
+            }
+        }
+    }
+
+    private static void extractKeyParams(KeyPlan plan, Object[] args, Parts parts) {
+        for (int i = 0; i < plan.params.length; i++) {
+            extractKeyParam(plan.params[i], args[i], parts);
+        }
+    }
+
+    private static void extractKeyParam(@Nullable PropertyPath path, @Nullable Object argVal, Parts parts) {
+        if (path == null) {
+            extractAnnotatedFields(argVal, parts);
+            return;
+        }
+        if (argVal == null) return;
+        if (path.isEmpty()) {
+            if (isSimple(argVal)) {
+                parts.append(String.valueOf(argVal));
             } else {
-                parts.addAll(extractAnnotatedFields(args[i]));
+                extractAnnotatedFields(argVal, parts);
+            }
+        } else {
+            Object v = readProperty(argVal, path);
+            if (v != null) {
+                parts.append(String.valueOf(v));
             }
         }
-        return parts;
     }
 
-    private static List<String> extractAnnotatedFields(@Nullable Object bean) {
-        List<String> parts = new ArrayList<>();
-        if (bean == null || isSimple(bean)) return parts;
-        Class<?> clazz = bean.getClass();
-        for (Field f : clazz.getDeclaredFields()) {
-            LockKeyParam fieldAnn = f.getAnnotation(LockKeyParam.class);
-            if (fieldAnn != null) {
-                boolean acc = f.isAccessible();
-                try {
-                    if (!acc) {
-                        f.setAccessible(true);
-                    }
-                    Object v = f.get(bean);
-                    String path = sanitize(fieldAnn.value());
-                    Object val = v;
-                    if (!path.isEmpty() && v != null) {
-                        val = readProperty(v, path);
-                    }
-                    if (val != null) {
-                        parts.add(String.valueOf(val));
-                    }
-                } catch (IllegalAccessException ignored) {
-                } finally {
-                    if (!acc) {
-                        f.setAccessible(false);
-                    }
-                }
+    private static void extractAnnotatedFields(@Nullable Object bean, Parts parts) {
+        if (bean == null || isSimple(bean)) return;
+        for (FieldSlot slot : fieldSlots(bean.getClass())) {
+            Object v = slot.accessor.get(bean);
+            Object val = v;
+            if (!slot.path.isEmpty() && v != null) {
+                val = readProperty(v, slot.path);
+            }
+            if (val != null) {
+                parts.append(String.valueOf(val));
             }
         }
-        return parts;
+    }
+
+    private static FieldSlot[] fieldSlots(Class<?> clazz) {
+        return FIELD_SLOTS.get(clazz);
+    }
+
+    private static FieldSlot[] scanFields(Class<?> clazz) {
+        List<FieldSlot> slots = new ArrayList<>();
+        for (PropertyAccessors.AnnotatedField f : PropertyAccessors.annotatedFields(clazz)) {
+            slots.add(new FieldSlot(f.accessor, new PropertyPath(PARSER, sanitize(f.annotation.value()))));
+        }
+        return slots.isEmpty() ? NO_FIELDS : slots.toArray(new FieldSlot[0]);
     }
 
     private static boolean isSimple(Object o) {
@@ -161,47 +372,259 @@ public final class KeyResolver {
                 || Character.class.isAssignableFrom(c);
     }
 
+    private static boolean isScannable(Class<?> type) {
+        return !type.isPrimitive() && !type.isInterface() && !type.isArray() && type != Object.class
+                && !Number.class.isAssignableFrom(type) && !CharSequence.class.isAssignableFrom(type)
+                && !Boolean.class.isAssignableFrom(type) && !Character.class.isAssignableFrom(type)
+                && !type.getName().startsWith("java.");
+    }
+
     private static String sanitize(String s) {
         return s == null ? "" : s.trim();
     }
 
-    private static Object readProperty(Object root, String path) {
+    @Nullable
+    private static Expression parse(ExpressionParser parser, String expr) {
         try {
-            StandardEvaluationContext ctx = new StandardEvaluationContext(root);
-            Expression exp = PARSER.parseExpression(path);
-            Object val = exp.getValue(ctx);
-            if (val != null) {
-                return val;
+            return parser.parseExpression(expr);
+        } catch (Exception e) {
+            if (log.isDebugEnabled()) {
+                log.debug("parse expression failed expr={}, msg={}", expr, e.getMessage());
+            }
+            return null;
+        }
+    }
+
+    /**
+     * IMMEDIATE 模式下编译代码执行失败会直接抛出异常，此时退回解释执行再求值一次
+     */
+    private static Object getValue(Expression expression, EvaluationContext ctx) {
+        try {
+            return expression.getValue(ctx);
+        } catch (SpelEvaluationException e) {
+            revertToInterpreted(expression, e);
+            return expression.getValue(ctx);
+        }
+    }
+
+    private static Object getValue(Expression expression, Object root) {
+        try {
+            return expression.getValue(root);
+        } catch (SpelEvaluationException e) {
+            revertToInterpreted(expression, e);
+            return expression.getValue(root);
+        }
+    }
+
+    private static void revertToInterpreted(Expression expression, SpelEvaluationException e) {
+        if (e.getMessageCode() != SpelMessage.EXCEPTION_RUNNING_COMPILED_EXPRESSION
+                || !(expression instanceof SpelExpression)) {
+            throw e;
+        }
+        ((SpelExpression) expression).revertToInterpreted();
+        if (log.isDebugEnabled()) {
+            log.debug("compiled expression failed, reverted to interpreter expr={}, msg={}",
+                    expression.getExpressionString(), e.getMessage());
+        }
+    }
+
+    private static Object readProperty(Object root, PropertyPath path) {
+        if (path.expression != null) {
+            try {
+                Object val = getValue(path.expression, root);
+                if (val != null) {
+                    return val;
+                }
+            } catch (Exception ignored) {
             }
-        } catch (Exception ignored) {
         }
         try {
-            String[] tokens = path.split("\\.");
             Object current = root;
-            for (String token : tokens) {
+            for (String token : path.tokens) {
                 if (current == null) {
                     return null;
                 }
-                Class<?> c = current.getClass();
-                Field f;
-                try {
-                    f = c.getDeclaredField(token);
-                } catch (NoSuchFieldException nf) {
+                PropertyAccessors.Accessor accessor = PropertyAccessors.field(current.getClass(), token);
+                if (accessor == null) {
                     return null;
                 }
-                boolean acc = f.isAccessible();
-                if (!acc) {
-                    f.setAccessible(true);
-                }
-                current = f.get(current);
-                if (!acc) {
-                    f.setAccessible(false);
-                }
+                current = accessor.get(current);
             }
             return current;
         } catch (Exception e) {
-            log.warn("readProperty error : path:{} msg {} ", path, e.getMessage());
+            log.warn("readProperty error : path:{} msg {} ", path.path, e.getMessage());
             return null;
         }
     }
+
+    private static final class KeyPlan {
+        @Nullable
+        private final String prefix;
+        private final String delimiter;
+        @Nullable
+        private final String[] parameterNames;
+        private final PropertyPath[] params;
+        private final boolean[] expand;
+        private final boolean multi;
+        private final boolean hashed;
+        private final KeyExpression[] keys;
+        private final List<Class<?>> scannedTypes;
+
+        private KeyPlan(Lock lockAnn, Method method) {
+            String p = lockAnn.prefix();
+            this.prefix = p != null && !p.trim().isEmpty() ? p : null;
+            this.delimiter = lockAnn.delimiter();
+            this.hashed = lockAnn.keyEncoding() == KeyEncoding.HASHED;
+            this.parameterNames = NAME_DISCOVERER.getParameterNames(method);
+            ExpressionParser parser = PARSERS.get(lockAnn.spelCompilerMode());
+            Parameter[] parameters = method.getParameters();
+            this.params = new PropertyPath[parameters.length];
+            this.expand = new boolean[parameters.length];
+            boolean anyExpand = false;
+            List<Class<?>> types = new ArrayList<>();
+            for (int i = 0; i < parameters.length; i++) {
+                LockKeyParam ann = parameters[i].getAnnotation(LockKeyParam.class);
+                Class<?> type = parameters[i].getType();
+                if (ann != null) {
+                    params[i] = new PropertyPath(parser, sanitize(ann.value()));
+                    expand[i] = Collection.class.isAssignableFrom(type) || type.isArray();
+                    anyExpand |= expand[i];
+                }
+                if ((ann == null || params[i].isEmpty()) && !expand[i] && isScannable(type)) {
+                    types.add(type);
+                }
+            }
+            this.scannedTypes = types;
+            this.multi = anyExpand;
+            List<KeyExpression> exprs = new ArrayList<>();
+            for (String keyExpr : lockAnn.keys()) {
+                if (keyExpr != null && !keyExpr.trim().isEmpty()) {
+                    exprs.add(new KeyExpression(parser, keyExpr));
+                }
+            }
+            this.keys = exprs.toArray(new KeyExpression[0]);
+        }
+    }
+
+    private interface Parts {
+        void append(String part);
+
+        int size();
+    }
+
+    private static final class PartList extends ArrayList<String> implements Parts {
+        @Override
+        public void append(String part) {
+            add(part);
+        }
+    }
+
+    private static final class KeyBuilder implements Parts {
+        private final KeyPlan plan;
+        private final StringBuilder sb = new StringBuilder(64);
+        @Nullable
+        private final KeyHash hash;
+        @Nullable
+        private final List<String> trace;
+        private int size;
+
+        private KeyBuilder(KeyPlan plan) {
+            this.plan = plan;
+            this.hash = plan.hashed ? new KeyHash() : null;
+            this.trace = log.isDebugEnabled() ? new ArrayList<>() : null;
+            if (plan.prefix != null) {
+                sb.append(plan.prefix);
+            }
+        }
+
+        @Override
+        public void append(String part) {
+            if (hash == null) {
+                if (size > 0 || plan.prefix != null) {
+                    sb.append(plan.delimiter);
+                }
+                sb.append(part);
+            } else {
+                if (size > 0) {
+                    hash.put(plan.delimiter);
+                }
+                hash.put(part);
+            }
+            if (trace != null) {
+                trace.add(part);
+            }
+            size++;
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        private String build() {
+            if (hash != null && size > 0) {
+                if (plan.prefix != null) {
+                    sb.append(plan.delimiter);
+                }
+                hash.appendTo(sb);
+            }
+            String built = sb.toString();
+            if (trace != null) {
+                if (hash != null) {
+                    log.debug("hashed lock key={}, parts={}", built, trace);
+                } else {
+                    log.debug("built lock key={}, parts={}", built, trace);
+                }
+            }
+            return built;
+        }
+    }
+
+    private static final class KeyExpression {
+        @Nullable
+        private final Expression expression;
+        private final String variable;
+        private final PropertyPath[] properties;
+
+        private KeyExpression(ExpressionParser parser, String keyExpr) {
+            this.expression = parse(parser, keyExpr);
+            String expr = keyExpr.trim();
+            if (expr.startsWith("#")) {
+                expr = expr.substring(1);
+            }
+            String[] tokens = expr.split("\\.");
+            this.variable = tokens[0];
+            this.properties = new PropertyPath[tokens.length - 1];
+            for (int i = 1; i < tokens.length; i++) {
+                properties[i - 1] = new PropertyPath(parser, tokens[i]);
+            }
+        }
+    }
+
+    private static final class PropertyPath {
+        private final String path;
+        @Nullable
+        private final Expression expression;
+        private final String[] tokens;
+
+        private PropertyPath(ExpressionParser parser, String path) {
+            this.path = path;
+            this.expression = path.isEmpty() ? null : parse(parser, path);
+            this.tokens = path.split("\\.");
+        }
+
+        private boolean isEmpty() {
+            return path.isEmpty();
+        }
+    }
+
+    private static final class FieldSlot {
+        private final PropertyAccessors.Accessor accessor;
+        private final PropertyPath path;
+
+        private FieldSlot(PropertyAccessors.Accessor accessor, PropertyPath path) {
+            this.accessor = accessor;
+            this.path = path;
+        }
+    }
 }
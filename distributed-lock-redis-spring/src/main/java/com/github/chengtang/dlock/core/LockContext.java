@@ -0,0 +1,68 @@
+package com.github.chengtang.dlock.core;
+
+import org.springframework.lang.Nullable;
+
+/**
+ * 当前线程正在执行的 @Lock 方法持有的锁凭证，嵌套时为最内层的凭证
+ */
+public final class LockContext {
+    public static final String UNNAMED = "unnamed";
+    public static final String NAME_CONTEXT_KEY = LockContext.class.getName() + ".name";
+
+    private static final ThreadLocal<LockHandle> CURRENT = new ThreadLocal<>();
+    private static final ThreadLocal<String> NAME = new ThreadLocal<>();
+
+    private LockContext() {
+    }
+
+    @Nullable
+    public static LockHandle current() {
+        return CURRENT.get();
+    }
+
+    public static long fence() {
+        LockHandle handle = CURRENT.get();
+        if (handle == null) {
+            throw new IllegalStateException("no lock is held by the current thread");
+        }
+        if (handle.fence() <= 0) {
+            throw new IllegalStateException("lock is not fenced, enable fencing on the lock client, handle=" + handle);
+        }
+        return handle.fence();
+    }
+
+    @Nullable
+    public static LockHandle bind(LockHandle handle) {
+        LockHandle previous = CURRENT.get();
+        CURRENT.set(handle);
+        return previous;
+    }
+
+    public static void restore(@Nullable LockHandle previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    public static String name() {
+        String name = NAME.get();
+        return name == null ? UNNAMED : name;
+    }
+
+    @Nullable
+    public static String bindName(String name) {
+        String previous = NAME.get();
+        NAME.set(name);
+        return previous;
+    }
+
+    public static void restoreName(@Nullable String previous) {
+        if (previous == null) {
+            NAME.remove();
+        } else {
+            NAME.set(previous);
+        }
+    }
+}
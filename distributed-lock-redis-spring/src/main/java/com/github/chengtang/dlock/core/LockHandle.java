@@ -0,0 +1,129 @@
+package com.github.chengtang.dlock.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 一次成功加锁的凭证；持有关系由凭证而非线程表示，可在其他线程释放
+ */
+public final class LockHandle {
+    private final String key;
+    private final String token;
+    private final boolean shared;
+    private final int permits;
+    private final long fence;
+    private final boolean bounded;
+    private final long validUntilNanos;
+    private final List<LockHandle> parts;
+
+    public LockHandle(String key, String token) {
+        this(key, token, false);
+    }
+
+    public LockHandle(String key, String token, boolean shared) {
+        this(key, token, shared, 0, 0L, false, 0L);
+    }
+
+    private LockHandle(String key, String token, boolean shared, int permits, long fence,
+                       boolean bounded, long validUntilNanos) {
+        this.key = Objects.requireNonNull(key, "key");
+        this.token = Objects.requireNonNull(token, "token");
+        this.shared = shared;
+        this.permits = permits;
+        this.fence = fence;
+        this.bounded = bounded;
+        this.validUntilNanos = validUntilNanos;
+        this.parts = Collections.singletonList(this);
+    }
+
+    private LockHandle(List<LockHandle> parts) {
+        this.key = parts.get(0).key;
+        this.token = parts.get(0).token;
+        this.shared = false;
+        this.permits = 0;
+        this.fence = 0L;
+        boolean anyBounded = false;
+        long earliest = 0L;
+        for (LockHandle part : parts) {
+            if (part.bounded && (!anyBounded || part.validUntilNanos - earliest < 0)) {
+                earliest = part.validUntilNanos;
+                anyBounded = true;
+            }
+        }
+        this.bounded = anyBounded;
+        this.validUntilNanos = earliest;
+        this.parts = Collections.unmodifiableList(parts);
+    }
+
+    public static LockHandle permit(String key, String token, int permits) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("permits must be >= 1: " + permits);
+        }
+        return new LockHandle(key, token, false, permits, 0L, false, 0L);
+    }
+
+    public static LockHandle fenced(String key, long fence) {
+        if (fence < 1) {
+            throw new IllegalArgumentException("fence must be >= 1: " + fence);
+        }
+        return new LockHandle(key, Long.toString(fence), false, 0, fence, false, 0L);
+    }
+
+    public static LockHandle bounded(String key, String token, long validUntilNanos) {
+        return new LockHandle(key, token, false, 0, 0L, true, validUntilNanos);
+    }
+
+    public static LockHandle of(List<LockHandle> parts) {
+        if (parts.isEmpty()) {
+            throw new IllegalArgumentException("parts must not be empty");
+        }
+        return parts.size() == 1 ? parts.get(0) : new LockHandle(new ArrayList<>(parts));
+    }
+
+    public String key() {
+        return key;
+    }
+
+    public String token() {
+        return token;
+    }
+
+    public boolean shared() {
+        return shared;
+    }
+
+    public int permits() {
+        return permits;
+    }
+
+    public long fence() {
+        return fence;
+    }
+
+    public long remainingValidity(TimeUnit unit) {
+        if (!bounded) {
+            return -1L;
+        }
+        return unit.convert(Math.max(0L, validUntilNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+    }
+
+    public List<LockHandle> parts() {
+        return parts;
+    }
+
+    @Override
+    public String toString() {
+        if (parts.size() == 1) {
+            return "LockHandle{key=" + key + (shared ? ", shared" : "") + (permits > 0 ? ", permits=" + permits : "")
+                    + (fence > 0 ? ", fence=" + fence : "") + "}";
+        }
+        List<String> keys = new ArrayList<>(parts.size());
+        for (LockHandle part : parts) {
+            keys.add(part.key);
+        }
+        return "LockHandle{keys=" + keys + "}";
+    }
+}
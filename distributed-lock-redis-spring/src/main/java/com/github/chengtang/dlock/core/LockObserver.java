@@ -0,0 +1,36 @@
+package com.github.chengtang.dlock.core;
+
+import java.util.Collection;
+import java.util.TreeSet;
+
+/**
+ * 加锁过程观测点，默认均为空实现
+ * name 为锁名称（类名#方法名），key 为实际锁 key
+ */
+public interface LockObserver {
+    LockObserver NOOP = new LockObserver() {
+    };
+
+    static String multiKey(Collection<String> keys) {
+        return new TreeSet<>(keys).toString();
+    }
+
+    default void onAcquire(String name, String key, boolean acquired, long waitNanos) {
+    }
+
+    default void onRelease(String name, String key, long holdNanos, long releaseNanos) {
+    }
+
+    default void onAttempts(String name, String key, int attempts, boolean acquired) {
+    }
+
+    /**
+     * 本地预加锁需要等待同 JVM 内的其他持有者，随后成功获取了锁；
+     * 此时锁服务可能首次尝试即成功，onAttempts 不体现这次竞争
+     */
+    default void onLocalContention(String name, String key) {
+    }
+
+    default void onReleaseMissed(String name, String key) {
+    }
+}
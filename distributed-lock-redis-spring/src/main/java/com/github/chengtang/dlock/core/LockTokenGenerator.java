@@ -0,0 +1,9 @@
+package com.github.chengtang.dlock.core;
+
+/**
+ * 持有者令牌生成器；同一 key 上同时存活的令牌必须互不相同
+ */
+@FunctionalInterface
+public interface LockTokenGenerator {
+    String next();
+}
@@ -0,0 +1,46 @@
+package com.github.chengtang.dlock.core;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 默认令牌：{@code <nodeId>:<JVM 启动时间>:<序号>}
+ */
+public final class NodeLockTokenGenerator implements LockTokenGenerator {
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private final String prefix;
+
+    public NodeLockTokenGenerator() {
+        this(defaultNodeId());
+    }
+
+    public NodeLockTokenGenerator(String nodeId) {
+        if (nodeId == null || nodeId.isEmpty()) {
+            throw new IllegalArgumentException("nodeId must not be empty");
+        }
+        this.prefix = nodeId + ":" + Long.toString(ManagementFactory.getRuntimeMXBean().getStartTime(), 36) + ":";
+    }
+
+    @Override
+    public String next() {
+        return prefix.concat(Long.toString(SEQUENCE.incrementAndGet(), 36));
+    }
+
+    static String defaultNodeId() {
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        int at = name.indexOf('@');
+        String pid = at > 0 ? name.substring(0, at) : name;
+        String host = at > 0 ? name.substring(at + 1) : hostName();
+        return host + ":" + pid;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "unknown";
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.github.chengtang.dlock.core;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地预加锁
+ * 同一 JVM 内竞争同一个 key 的线程先在本地锁上排队，只有本地胜出者访问分布式锁
+ */
+@Slf4j
+public class PreLockingDistributedLockClient implements DistributedLockClient {
+    private final DistributedLockClient delegate;
+    private final LockObserver observer;
+    private final Map<String, LocalLock> locals = new ConcurrentHashMap<>();
+    private final Set<LockHandle> bypassed = ConcurrentHashMap.newKeySet();
+
+    public PreLockingDistributedLockClient(DistributedLockClient delegate) {
+        this(delegate, LockObserver.NOOP);
+    }
+
+    public PreLockingDistributedLockClient(DistributedLockClient delegate, LockObserver observer) {
+        this.delegate = Objects.requireNonNull(delegate, "delegate");
+        this.observer = Objects.requireNonNull(observer, "observer");
+    }
+
+    public DistributedLockClient delegate() {
+        return delegate;
+    }
+
+    @Override
+    public LockHandle tryLock(String key, long leaseTime, TimeUnit unit) {
+        LocalLock local = retain(key);
+        if (!local.tryEnter()) {
+            release(key, local);
+            observer.onAttempts(LockContext.name(), key, 0, false);
+            if (log.isDebugEnabled()) {
+                log.debug("local pre-lock busy key={}", key);
+            }
+            return null;
+        }
+        LockHandle handle = null;
+        try {
+            handle = delegate.tryLock(key, leaseTime, unit);
+            return handle;
+        } finally {
+            if (handle == null) {
+                local.exit();
+                release(key, local);
+            }
+        }
+    }
+
+    @Override
+    public LockHandle tryLock(String key, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin) {
+        long deadline = System.nanoTime() + unit.toNanos(waitTime);
+        LocalLock local = retain(key);
+        boolean waited = false;
+        boolean entered = local.tryEnter();
+        try {
+            if (!entered) {
+                waited = true;
+                entered = local.tryEnter(unit.toNanos(waitTime));
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            entered = false;
+        }
+        if (!entered) {
+            release(key, local);
+            observer.onAttempts(LockContext.name(), key, 0, false);
+            if (log.isDebugEnabled()) {
+                log.debug("local pre-lock timeout key={}", key);
+            }
+            return null;
+        }
+        LockHandle handle = null;
+        try {
+            long remaining = deadline - System.nanoTime();
+            long lease = leaseTime < 0 ? leaseTime : unit.toNanos(leaseTime);
+            handle = remaining > 0
+                    ? delegate.tryLock(key, remaining, lease, TimeUnit.NANOSECONDS, spin)
+                    : delegate.tryLock(key, lease, TimeUnit.NANOSECONDS);
+            if (handle != null && waited) {
+                observer.onLocalContention(LockContext.name(), key);
+            }
+            return handle;
+        } finally {
+            if (handle == null) {
+                local.exit();
+                release(key, local);
+            }
+        }
+    }
+
+    @Override
+    public void unlock(LockHandle handle) {
+        if (bypassed.remove(handle)) {
+            delegate.unlock(handle);
+            return;
+        }
+        String key = handle.key();
+        LocalLock local = locals.get(key);
+        try {
+            delegate.unlock(handle);
+        } finally {
+            if (local != null) {
+                local.exit();
+                release(key, local);
+            }
+        }
+    }
+
+    @Override
+    public LockHandle tryReadLock(String key, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin) {
+        LockHandle handle = delegate.tryReadLock(key, waitTime, leaseTime, unit, spin);
+        if (handle != null) {
+            bypassed.add(handle);
+        }
+        return handle;
+    }
+
+    @Override
+    public LockHandle tryAcquirePermit(String key, int permits, long waitTime, long leaseTime, TimeUnit unit,
+                                       SpinWaitConfig spin) {
+        LockHandle handle = delegate.tryAcquirePermit(key, permits, waitTime, leaseTime, unit, spin);
+        if (handle != null) {
+            bypassed.add(handle);
+        }
+        return handle;
+    }
+
+    @Override
+    public LockHandle tryLockAll(List<String> keys, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin) {
+        return delegate.tryLockAll(keys, waitTime, leaseTime, unit, spin);
+    }
+
+    @Override
+    public void unlockAll(LockHandle handle) {
+        delegate.unlockAll(handle);
+    }
+
+    private LocalLock retain(String key) {
+        return locals.compute(key, (k, l) -> {
+            LocalLock local = l == null ? new LocalLock() : l;
+            local.users++;
+            return local;
+        });
+    }
+
+    private void release(String key, LocalLock local) {
+        locals.computeIfPresent(key, (k, l) -> l != local || --l.users > 0 ? l : null);
+    }
+
+    /**
+     * 可在其他线程释放的本地锁：单许可信号量加持有线程与重入计数；
+     * users 为持有与等待该本地锁的次数之和（含重入），只在 compute 内修改
+     */
+    private static final class LocalLock {
+        private final Semaphore permit = new Semaphore(1);
+        private volatile Thread owner;
+        private int holds;
+        private int users;
+
+        boolean tryEnter() {
+            return reenter() || acquired(permit.tryAcquire());
+        }
+
+        boolean tryEnter(long timeoutNanos) throws InterruptedException {
+            return reenter() || acquired(permit.tryAcquire(timeoutNanos, TimeUnit.NANOSECONDS));
+        }
+
+        private synchronized boolean reenter() {
+            if (owner != Thread.currentThread() || holds == 0) {
+                return false;
+            }
+            holds++;
+            return true;
+        }
+
+        private synchronized boolean acquired(boolean ok) {
+            if (ok) {
+                owner = Thread.currentThread();
+                holds = 1;
+            }
+            return ok;
+        }
+
+        synchronized void exit() {
+            if (holds > 0 && --holds == 0) {
+                owner = null;
+                permit.release();
+            }
+        }
+    }
+}
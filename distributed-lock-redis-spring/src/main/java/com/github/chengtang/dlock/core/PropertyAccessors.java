@@ -0,0 +1,137 @@
+package com.github.chengtang.dlock.core;
+
+import com.github.chengtang.lockkey.LockKeyParam;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按类缓存的字段访问器
+ * 缓存挂在 ClassValue 上，不阻止重新部署时回收类加载器
+ */
+@Slf4j
+final class PropertyAccessors {
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final ClassValue<ClassAccessors> CACHE = new ClassValue<ClassAccessors>() {
+        @Override
+        protected ClassAccessors computeValue(Class<?> type) {
+            return new ClassAccessors(type);
+        }
+    };
+    private static final Accessor MISSING = new Accessor("<missing>", null);
+
+    private PropertyAccessors() {
+    }
+
+    static List<AnnotatedField> annotatedFields(Class<?> clazz) {
+        return forClass(clazz).annotatedFields;
+    }
+
+    @Nullable
+    static Accessor field(Class<?> clazz, String name) {
+        ClassAccessors accessors = forClass(clazz);
+        Accessor accessor = accessors.byName.get(name);
+        if (accessor == null) {
+            accessor = accessors.byName.computeIfAbsent(name, n -> resolve(clazz, n));
+        }
+        return accessor == MISSING ? null : accessor;
+    }
+
+    private static ClassAccessors forClass(Class<?> clazz) {
+        return CACHE.get(clazz);
+    }
+
+    private static Accessor resolve(Class<?> clazz, String name) {
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                Field f = c.getDeclaredField(name);
+                if (!Modifier.isStatic(f.getModifiers())) {
+                    Accessor accessor = toAccessor(f);
+                    return accessor == null ? MISSING : accessor;
+                }
+            } catch (NoSuchFieldException ignored) {
+            }
+        }
+        return MISSING;
+    }
+
+    @Nullable
+    private static Accessor toAccessor(Field f) {
+        try {
+            f.setAccessible(true);
+            MethodHandle handle = MethodHandles.lookup().unreflectGetter(f).asType(GETTER_TYPE);
+            return new Accessor(f.getDeclaringClass().getName() + "." + f.getName(), handle);
+        } catch (IllegalAccessException | RuntimeException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("field not accessible field={}, msg={}", f, e.getMessage());
+            }
+            return null;
+        }
+    }
+
+    static final class Accessor {
+        private final String name;
+        private final MethodHandle handle;
+
+        private Accessor(String name, MethodHandle handle) {
+            this.name = name;
+            this.handle = handle;
+        }
+
+        Object get(Object bean) {
+            try {
+                return (Object) handle.invokeExact(bean);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException("read field failed: " + name, t);
+            }
+        }
+    }
+
+    static final class AnnotatedField {
+        final Accessor accessor;
+        final LockKeyParam annotation;
+
+        private AnnotatedField(Accessor accessor, LockKeyParam annotation) {
+            this.accessor = accessor;
+            this.annotation = annotation;
+        }
+    }
+
+    private static final class ClassAccessors {
+        private final List<AnnotatedField> annotatedFields;
+        private final Map<String, Accessor> byName = new ConcurrentHashMap<>();
+
+        private ClassAccessors(Class<?> clazz) {
+            List<Class<?>> hierarchy = new ArrayList<>();
+            for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+                hierarchy.add(0, c);
+            }
+            List<AnnotatedField> fields = new ArrayList<>();
+            for (Class<?> c : hierarchy) {
+                for (Field f : c.getDeclaredFields()) {
+                    LockKeyParam ann = f.getAnnotation(LockKeyParam.class);
+                    if (ann == null || Modifier.isStatic(f.getModifiers())) {
+                        continue;
+                    }
+                    Accessor accessor = toAccessor(f);
+                    if (accessor != null) {
+                        fields.add(new AnnotatedField(accessor, ann));
+                    }
+                }
+            }
+            this.annotatedFields = fields.isEmpty() ? Collections.emptyList() : Collections.unmodifiableList(fields);
+        }
+    }
+}
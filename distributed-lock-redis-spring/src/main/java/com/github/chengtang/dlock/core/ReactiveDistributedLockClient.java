@@ -0,0 +1,16 @@
+package com.github.chengtang.dlock.core;
+
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 非阻塞锁客户端，未获取到锁时为空
+ */
+public interface ReactiveDistributedLockClient {
+    Mono<LockHandle> tryLock(String key, long leaseTime, TimeUnit unit);
+
+    Mono<LockHandle> tryLock(String key, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin);
+
+    Mono<Void> unlock(LockHandle handle);
+}
@@ -0,0 +1,38 @@
+package com.github.chengtang.dlock.core;
+
+import org.springframework.lang.Nullable;
+
+import java.io.Serializable;
+
+/**
+ * 单飞模式下持有者的执行结果：返回值或异常
+ */
+public final class SingleFlightResult implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    @Nullable
+    private final Object value;
+    @Nullable
+    private final Throwable error;
+
+    private SingleFlightResult(@Nullable Object value, @Nullable Throwable error) {
+        this.value = value;
+        this.error = error;
+    }
+
+    public static SingleFlightResult value(@Nullable Object value) {
+        return new SingleFlightResult(value, null);
+    }
+
+    public static SingleFlightResult error(Throwable error) {
+        return new SingleFlightResult(null, error);
+    }
+
+    @Nullable
+    public Object get() throws Throwable {
+        if (error != null) {
+            throw error;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,15 @@
+package com.github.chengtang.dlock.core;
+
+import org.springframework.lang.Nullable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单飞结果的跨实例共享
+ */
+public interface SingleFlightResultStore {
+    void publish(String key, SingleFlightResult result, long ttl, TimeUnit unit);
+
+    @Nullable
+    SingleFlightResult fetch(String key);
+}
@@ -0,0 +1,60 @@
+package com.github.chengtang.dlock.core;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 一次等待过程中的回退间隔序列，非线程安全
+ */
+public final class SpinBackoff {
+    private static final int MAX_SHIFT = 30;
+
+    private final SpinWaitConfig spin;
+    private final long baseNanos;
+    private final long capNanos;
+    private long lastNanos;
+    private int steps;
+
+    public SpinBackoff(SpinWaitConfig spin) {
+        this.spin = spin;
+        this.baseNanos = Math.max(0L, spin.unit().toNanos(spin.interval()));
+        this.capNanos = spin.maxInterval() > 0 ? spin.unit().toNanos(spin.maxInterval()) : Long.MAX_VALUE;
+    }
+
+    public long next(long remainingHoldNanos) {
+        steps++;
+        long nanos;
+        switch (spin.strategy()) {
+            case LINEAR:
+                nanos = saturatedMultiply(baseNanos, steps);
+                break;
+            case EXPONENTIAL:
+                nanos = exponential();
+                break;
+            case FULL_JITTER:
+                nanos = random(0L, Math.min(exponential(), capNanos));
+                break;
+            case DECORRELATED_JITTER:
+                nanos = steps == 1 ? baseNanos : random(baseNanos, saturatedMultiply(Math.max(lastNanos, baseNanos), 3));
+                break;
+            case ADAPTIVE:
+                nanos = (remainingHoldNanos > 0 ? remainingHoldNanos : baseNanos) + random(0L, baseNanos);
+                break;
+            default:
+                nanos = baseNanos;
+        }
+        lastNanos = Math.min(nanos, capNanos);
+        return lastNanos;
+    }
+
+    private long exponential() {
+        return baseNanos == 0 ? 0L : saturatedMultiply(baseNanos, 1L << Math.min(steps - 1, MAX_SHIFT));
+    }
+
+    private static long random(long from, long to) {
+        return to <= from ? from : ThreadLocalRandom.current().nextLong(from, to + 1);
+    }
+
+    private static long saturatedMultiply(long a, long b) {
+        return a > Long.MAX_VALUE / Math.max(1L, b) ? Long.MAX_VALUE : a * b;
+    }
+}
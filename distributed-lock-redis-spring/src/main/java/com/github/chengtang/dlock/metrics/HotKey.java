@@ -0,0 +1,39 @@
+package com.github.chengtang.dlock.metrics;
+
+/**
+ * 一个热点 key 的统计快照
+ */
+public final class HotKey {
+    private final String key;
+    private final long contended;
+    private final long error;
+    private final long waitMillis;
+
+    public HotKey(String key, long contended, long error, long waitMillis) {
+        this.key = key;
+        this.contended = contended;
+        this.error = error;
+        this.waitMillis = waitMillis;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getContended() {
+        return contended;
+    }
+
+    public long getError() {
+        return error;
+    }
+
+    public long getWaitMillis() {
+        return waitMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "HotKey{key=" + key + ", contended=" + contended + ", error=" + error + ", waitMillis=" + waitMillis + "}";
+    }
+}
@@ -0,0 +1,180 @@
+package com.github.chengtang.dlock.metrics;
+
+import com.github.chengtang.dlock.core.LockObserver;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 热点 key 统计：Space-Saving 算法在固定个数的计数器内跟踪竞争最多的 key
+ * 次数与等待时长每经过 halfLife 减半
+ */
+public class HotKeyProfiler implements LockObserver, HotKeyProfilerMXBean {
+    public static final String OBJECT_NAME = "com.github.chengtang.dlock:type=HotKeyProfiler";
+
+    private final int capacity;
+    private final int topK;
+    private final long halfLifeNanos;
+    private final Map<String, Counter> counters;
+    private long nextDecay;
+    /**
+     * 本线程最近一次发生竞争的 key；切面随后在同一线程回调 onAcquire 时据此累计等待时长
+     */
+    private final ThreadLocal<String> contendedKey = new ThreadLocal<>();
+
+    public HotKeyProfiler(int capacity, int topK, long halfLife, TimeUnit unit) {
+        if (capacity < 1 || topK < 1 || halfLife <= 0) {
+            throw new IllegalArgumentException("capacity and topK must be >= 1, halfLife > 0: capacity=" + capacity
+                    + ", topK=" + topK + ", halfLife=" + halfLife);
+        }
+        this.capacity = capacity;
+        this.topK = topK;
+        this.halfLifeNanos = unit.toNanos(halfLife);
+        this.counters = new HashMap<>(capacity * 4 / 3 + 1);
+        this.nextDecay = System.nanoTime() + halfLifeNanos;
+    }
+
+    @Override
+    public void onAttempts(String name, String key, int attempts, boolean acquired) {
+        if (attempts <= 1 && acquired) {
+            // 清除未被 onAcquire 取走的竞争 key（未经切面直接调用客户端时）
+            contendedKey.remove();
+            return;
+        }
+        contended(key);
+    }
+
+    /**
+     * 被装饰的客户端已回调 onAttempts 后才会到达这里，因此不会被其清除
+     */
+    @Override
+    public void onLocalContention(String name, String key) {
+        contended(key);
+    }
+
+    private void contended(String key) {
+        contendedKey.set(key);
+        synchronized (this) {
+            decay(System.nanoTime());
+            Counter counter = counters.get(key);
+            if (counter == null) {
+                counter = admit(key);
+            }
+            counter.count++;
+        }
+    }
+
+    @Override
+    public void onAcquire(String name, String key, boolean acquired, long waitNanos) {
+        String contended = contendedKey.get();
+        try {
+            if (contended == null || !contended.equals(key)) {
+                return;
+            }
+            synchronized (this) {
+                Counter counter = counters.get(key);
+                if (counter != null) {
+                    counter.waitNanos += waitNanos;
+                }
+            }
+        } finally {
+            contendedKey.remove();
+        }
+    }
+
+    private Counter admit(String key) {
+        if (counters.size() < capacity) {
+            Counter counter = new Counter(key, 0.0);
+            counters.put(key, counter);
+            return counter;
+        }
+        Counter min = null;
+        for (Counter c : counters.values()) {
+            if (min == null || c.count < min.count) {
+                min = c;
+            }
+        }
+        counters.remove(min.key);
+        Counter counter = new Counter(key, min.count);
+        counters.put(key, counter);
+        return counter;
+    }
+
+    private void decay(long now) {
+        if (now - nextDecay < 0) {
+            return;
+        }
+        long periods = (now - nextDecay) / halfLifeNanos + 1;
+        double factor = periods >= 64 ? 0.0 : 1.0 / (1L << periods);
+        for (Counter c : counters.values()) {
+            c.count *= factor;
+            c.error *= factor;
+            c.waitNanos *= factor;
+        }
+        nextDecay += periods * halfLifeNanos;
+    }
+
+    @Override
+    public List<HotKey> getTopKeys() {
+        return topKeys(topK);
+    }
+
+    public List<HotKey> topKeys(int n) {
+        List<Counter> snapshot;
+        synchronized (this) {
+            decay(System.nanoTime());
+            snapshot = new ArrayList<>(counters.size());
+            for (Counter c : counters.values()) {
+                snapshot.add(c.copy());
+            }
+        }
+        snapshot.sort((a, b) -> Double.compare(b.count, a.count));
+        List<HotKey> top = new ArrayList<>(Math.min(n, snapshot.size()));
+        for (Counter c : snapshot) {
+            if (top.size() >= n || Math.round(c.count) == 0) {
+                break;
+            }
+            top.add(new HotKey(c.key, Math.round(c.count), Math.round(c.error), TimeUnit.NANOSECONDS.toMillis((long) c.waitNanos)));
+        }
+        return Collections.unmodifiableList(top);
+    }
+
+    @Override
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public long getHalfLifeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(halfLifeNanos);
+    }
+
+    @Override
+    public synchronized void reset() {
+        counters.clear();
+    }
+
+    private static final class Counter {
+        private final String key;
+        private double count;
+        private double error;
+        private double waitNanos;
+
+        private Counter(String key, double inherited) {
+            this.key = key;
+            this.count = inherited;
+            this.error = inherited;
+        }
+
+        private Counter copy() {
+            Counter c = new Counter(key, error);
+            c.count = count;
+            c.waitNanos = waitNanos;
+            return c;
+        }
+    }
+}
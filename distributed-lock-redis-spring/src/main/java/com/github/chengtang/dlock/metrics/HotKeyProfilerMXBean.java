@@ -0,0 +1,16 @@
+package com.github.chengtang.dlock.metrics;
+
+import java.util.List;
+
+/**
+ * 热点 key 统计的 JMX 视图
+ */
+public interface HotKeyProfilerMXBean {
+    List<HotKey> getTopKeys();
+
+    int getCapacity();
+
+    long getHalfLifeMillis();
+
+    void reset();
+}
@@ -0,0 +1,94 @@
+package com.github.chengtang.dlock.metrics;
+
+import com.github.chengtang.dlock.core.LockObserver;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 Micrometer 的加锁指标，按锁名称打标签
+ */
+public class MicrometerLockObserver implements LockObserver {
+    private static final double[] ATTEMPT_BUCKETS = {1, 2, 4, 8, 16, 32, 64};
+
+    private final MeterRegistry registry;
+    private final Map<String, NamedMeters> meters = new ConcurrentHashMap<>();
+
+    public MicrometerLockObserver(MeterRegistry registry) {
+        this.registry = Objects.requireNonNull(registry, "registry");
+    }
+
+    @Override
+    public void onAcquire(String name, String key, boolean acquired, long waitNanos) {
+        NamedMeters m = meters(name);
+        (acquired ? m.acquired : m.timedOut).record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onRelease(String name, String key, long holdNanos, long releaseNanos) {
+        NamedMeters m = meters(name);
+        m.hold.record(holdNanos, TimeUnit.NANOSECONDS);
+        m.release.record(releaseNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onAttempts(String name, String key, int attempts, boolean acquired) {
+        NamedMeters m = meters(name);
+        m.attempts.record(attempts);
+        if (attempts > 1 || !acquired) {
+            m.contended.increment();
+        }
+    }
+
+    @Override
+    public void onLocalContention(String name, String key) {
+        meters(name).contended.increment();
+    }
+
+    @Override
+    public void onReleaseMissed(String name, String key) {
+        meters(name).releaseMissed.increment();
+    }
+
+    private NamedMeters meters(String name) {
+        NamedMeters m = meters.get(name);
+        if (m == null) {
+            m = meters.computeIfAbsent(name, n -> new NamedMeters(registry, n));
+        }
+        return m;
+    }
+
+    private static final class NamedMeters {
+        private final Timer acquired;
+        private final Timer timedOut;
+        private final Timer hold;
+        private final Timer release;
+        private final DistributionSummary attempts;
+        private final Counter contended;
+        private final Counter releaseMissed;
+
+        private NamedMeters(MeterRegistry registry, String name) {
+            this.acquired = Timer.builder("dlock.acquire").tag("name", name).tag("outcome", "acquired")
+                    .description("Lock acquisition latency").register(registry);
+            this.timedOut = Timer.builder("dlock.acquire").tag("name", name).tag("outcome", "timeout")
+                    .description("Lock acquisition latency").register(registry);
+            this.hold = Timer.builder("dlock.hold").tag("name", name)
+                    .description("Lock hold time").register(registry);
+            this.release = Timer.builder("dlock.release").tag("name", name)
+                    .description("Lock release latency").register(registry);
+            this.attempts = DistributionSummary.builder("dlock.attempts").tag("name", name)
+                    .serviceLevelObjectives(ATTEMPT_BUCKETS)
+                    .description("Lock service attempts per acquisition").register(registry);
+            this.contended = Counter.builder("dlock.contended").tag("name", name)
+                    .description("Acquisitions that did not succeed on the first attempt").register(registry);
+            this.releaseMissed = Counter.builder("dlock.release.missed").tag("name", name)
+                    .description("Releases of locks that were no longer owned").register(registry);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.chengtang.dlock.redis;
+
+import com.github.chengtang.dlock.core.SingleFlightResult;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.lang.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 只接受白名单类的 JDK 序列化，反序列化时不会实例化白名单外的类
+ */
+public class AllowListSerializationRedisSerializer implements RedisSerializer<Object> {
+    private static final Set<String> BUILT_IN_PACKAGES = new HashSet<>(Arrays.asList(
+            "java.lang", "java.util", "java.time", "java.math"));
+
+    private final Set<String> allowedNames = new HashSet<>();
+    private final List<String> allowedPrefixes = new ArrayList<>();
+
+    public AllowListSerializationRedisSerializer() {
+        this(Collections.emptyList());
+    }
+
+    public AllowListSerializationRedisSerializer(Collection<String> allowedTypes) {
+        allowedNames.add(SingleFlightResult.class.getName());
+        for (String type : allowedTypes) {
+            if (type.endsWith(".")) {
+                allowedPrefixes.add(type);
+            } else {
+                allowedNames.add(type);
+            }
+        }
+    }
+
+    boolean allowed(String className) {
+        String name = className;
+        if (name.startsWith("[")) {
+            name = name.substring(name.lastIndexOf('[') + 1);
+            if (name.length() == 1) {
+                return true;
+            }
+            name = name.substring(1, name.length() - 1);
+        }
+        if (allowedNames.contains(name)) {
+            return true;
+        }
+        int dot = name.lastIndexOf('.');
+        if (dot > 0 && BUILT_IN_PACKAGES.contains(name.substring(0, dot))) {
+            return true;
+        }
+        for (String prefix : allowedPrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public byte[] serialize(@Nullable Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes) {
+            @Override
+            protected void annotateClass(Class<?> cl) throws IOException {
+                if (!allowed(cl.getName())) {
+                    throw new InvalidClassException(cl.getName(), "type not in single-flight allow list");
+                }
+            }
+
+            @Override
+            protected void annotateProxyClass(Class<?> cl) throws IOException {
+                throw new InvalidClassException(cl.getName(), "proxy classes are not allowed");
+            }
+        }) {
+            out.writeObject(value);
+        } catch (IOException e) {
+            throw new SerializationException("Cannot serialize " + value.getClass().getName() + ": " + e.getMessage(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    @Nullable
+    public Object deserialize(@Nullable byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes)) {
+            @Override
+            protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+                if (!allowed(desc.getName())) {
+                    throw new InvalidClassException(desc.getName(), "type not in single-flight allow list");
+                }
+                return super.resolveClass(desc);
+            }
+
+            @Override
+            protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+                throw new InvalidClassException(Arrays.toString(interfaces), "proxy classes are not allowed");
+            }
+        }) {
+            return in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            throw new SerializationException("Cannot deserialize: " + e.getMessage(), e);
+        }
+    }
+}
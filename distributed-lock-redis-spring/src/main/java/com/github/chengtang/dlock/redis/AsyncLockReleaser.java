@@ -0,0 +1,282 @@
+package com.github.chengtang.dlock.redis;
+
+import com.github.chengtang.dlock.core.LockContext;
+import com.github.chengtang.dlock.core.LockObserver;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 异步释放
+ * 释放脚本由后台线程攒批后以流水线发送，队列已满或已关闭时由调用方同步释放
+ */
+@Slf4j
+public class AsyncLockReleaser {
+    private static final long IDLE_POLL_MILLIS = 100L;
+
+    private final StringRedisTemplate redis;
+    private final LockObserver observer;
+    private final BlockingQueue<Release> queue;
+    private final Map<String, List<Release>> pending = new ConcurrentHashMap<>();
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private volatile boolean running = true;
+    private volatile Thread flusher;
+
+    public AsyncLockReleaser(StringRedisTemplate redisTemplate, LockObserver observer, int capacity, int batchSize,
+                             long maxDelay, TimeUnit unit) {
+        if (capacity < 1 || batchSize < 1 || maxDelay < 0) {
+            throw new IllegalArgumentException("capacity and batchSize must be >= 1, maxDelay >= 0: capacity=" + capacity
+                    + ", batchSize=" + batchSize + ", maxDelay=" + maxDelay);
+        }
+        this.redis = Objects.requireNonNull(redisTemplate, "redisTemplate");
+        this.observer = Objects.requireNonNull(observer, "observer");
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+    }
+
+    public int queued() {
+        return queue.size();
+    }
+
+    boolean submit(String key, DefaultRedisScript<Long> script, List<String> keys, Object[] args) {
+        if (!running) {
+            return false;
+        }
+        Release release = new Release(LockContext.name(), key, script, keys, args);
+        pending.compute(key, (k, list) -> {
+            List<Release> releases = list == null ? new ArrayList<>(1) : list;
+            releases.add(release);
+            return releases;
+        });
+        if (!queue.offer(release)) {
+            unpend(release);
+            if (log.isDebugEnabled()) {
+                log.debug("release queue full, release synchronously key={}", key);
+            }
+            return false;
+        }
+        if (flusher == null) {
+            start();
+        }
+        if (!running) {
+            // 与 shutdown 并发时刷新线程可能已退出，自行认领执行
+            settle(key);
+        }
+        return true;
+    }
+
+    /**
+     * 加锁前调用：key 有尚未发出的释放时在当前线程按入队顺序同步执行，使本实例立即看到释放
+     */
+    void settle(String key) {
+        List<Release> releases = pending.remove(key);
+        if (releases == null) {
+            return;
+        }
+        for (Release release : releases) {
+            if (release.claim()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("settle queued release before acquire key={}", key);
+                }
+                execute(release);
+            }
+        }
+    }
+
+    private void unpend(Release release) {
+        pending.computeIfPresent(release.key, (k, releases) -> {
+            releases.remove(release);
+            return releases.isEmpty() ? null : releases;
+        });
+    }
+
+    private synchronized void start() {
+        if (flusher != null || !running) {
+            return;
+        }
+        Thread t = new Thread(this::run, "dlock-release");
+        t.setDaemon(true);
+        t.start();
+        flusher = t;
+    }
+
+    private void run() {
+        List<Release> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Release first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = first.enqueuedAt + maxDelayNanos;
+                while (batch.size() < batchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Release next = remaining > 0 && running ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException ie) {
+                // 被中断时停止接收新的释放，继续发出队列中剩余的释放
+                running = false;
+            }
+            flush(batch);
+            batch.clear();
+        }
+    }
+
+    private void flush(List<Release> batch) {
+        List<Release> claimed = new ArrayList<>(batch.size());
+        for (Release release : batch) {
+            unpend(release);
+            if (release.claim()) {
+                claimed.add(release);
+            }
+        }
+        if (claimed.isEmpty()) {
+            return;
+        }
+        AtomicBoolean sent = new AtomicBoolean();
+        List<Object> results;
+        try {
+            results = redis.executePipelined((RedisCallback<Object>) connection -> {
+                sent.set(true);
+                for (Release release : claimed) {
+                    connection.scriptingCommands().evalSha(release.script.getSha1(), ReturnType.INTEGER,
+                            release.keys.size(), release.keysAndArgs());
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            if (!sent.get()) {
+                // 连接不支持流水线（集群连接），命令尚未发出，逐个执行
+                if (log.isDebugEnabled()) {
+                    log.debug("pipeline unsupported, release one by one size={}, msg={}", claimed.size(), e.getMessage());
+                }
+                for (Release release : claimed) {
+                    execute(release, true);
+                }
+            } else if (isNoScript(e)) {
+                // 同批释放可能已执行，按令牌校验的重放无害，但返回 0 无法区分落空与已执行，不记为落空
+                if (log.isDebugEnabled()) {
+                    log.debug("script not loaded, release one by one size={}", claimed.size());
+                }
+                for (Release release : claimed) {
+                    execute(release, false);
+                }
+            } else {
+                // 命令可能已在服务端执行，结果未知，锁随租约过期
+                log.warn("pipelined release failed, locks expire with their lease size={}, msg={}", claimed.size(), e.getMessage());
+            }
+            return;
+        }
+        for (int i = 0; i < claimed.size(); i++) {
+            Object result = i < results.size() ? results.get(i) : null;
+            completed(claimed.get(i), result instanceof Long ? (Long) result : null);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("release batch flushed size={}", claimed.size());
+        }
+    }
+
+    private static boolean isNoScript(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void execute(Release release) {
+        execute(release, true);
+    }
+
+    private void execute(Release release, boolean reportMissed) {
+        Long released;
+        try {
+            released = redis.execute(release.script, release.keys, release.args);
+        } catch (RuntimeException e) {
+            log.warn("async release failed, lock expires with its lease key={}, msg={}", release.key, e.getMessage());
+            return;
+        }
+        if (reportMissed) {
+            completed(release, released);
+        }
+    }
+
+    private void completed(Release release, Long released) {
+        if (released == null || released == 0L) {
+            observer.onReleaseMissed(release.name, release.key);
+            if (log.isDebugEnabled()) {
+                log.debug("unlock missed, lock no longer owned key={}", release.key);
+            }
+        }
+    }
+
+    public void shutdown() {
+        running = false;
+        Thread t = flusher;
+        if (t == null) {
+            return;
+        }
+        try {
+            t.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Release {
+        private final String name;
+        private final String key;
+        private final DefaultRedisScript<Long> script;
+        private final List<String> keys;
+        private final Object[] args;
+        private final long enqueuedAt = System.nanoTime();
+        /**
+         * 由刷新线程或加锁前的 settle 二者之一认领执行
+         */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private Release(String name, String key, DefaultRedisScript<Long> script, List<String> keys, Object[] args) {
+            this.name = name;
+            this.key = key;
+            this.script = script;
+            this.keys = keys;
+            this.args = args;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        byte[][] keysAndArgs() {
+            byte[][] out = new byte[keys.size() + args.length][];
+            for (int i = 0; i < keys.size(); i++) {
+                out[i] = keys.get(i).getBytes(StandardCharsets.UTF_8);
+            }
+            for (int i = 0; i < args.length; i++) {
+                out[keys.size() + i] = String.valueOf(args[i]).getBytes(StandardCharsets.UTF_8);
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.chengtang.dlock.redis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.lang.Nullable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 锁释放通知
+ * 只在本实例有等待者期间订阅对应 key 的频道
+ */
+@Slf4j
+public class LockReleaseNotifier {
+    private final String channelPrefix;
+    private final long safetyTimeoutNanos;
+    private final Map<String, Signal> signals = new ConcurrentHashMap<>();
+    @Nullable
+    private volatile RedisMessageListenerContainer container;
+
+    public LockReleaseNotifier(String channelPrefix, long safetyTimeout, TimeUnit unit) {
+        this.channelPrefix = channelPrefix;
+        this.safetyTimeoutNanos = unit.toNanos(safetyTimeout);
+    }
+
+    public String channel(String key) {
+        return channelPrefix + key;
+    }
+
+    public void setListenerContainer(RedisMessageListenerContainer container) {
+        this.container = container;
+    }
+
+    public long safetyTimeoutNanos() {
+        return safetyTimeoutNanos;
+    }
+
+    /**
+     * 必须与 {@link #unsubscribe(String, Signal)} 成对调用
+     */
+    public Signal subscribe(String key) {
+        Signal signal = signals.compute(key, (k, s) -> {
+            Signal created = s == null ? new Signal(channel(k)) : s;
+            created.waiters++;
+            return created;
+        });
+        RedisMessageListenerContainer listeners = container;
+        if (listeners != null) {
+            signal.listen(listeners);
+        }
+        return signal;
+    }
+
+    public void unsubscribe(String key, Signal signal) {
+        Signal remaining = signals.computeIfPresent(key, (k, s) -> {
+            if (s != signal) {
+                return s;
+            }
+            return --s.waiters <= 0 ? null : s;
+        });
+        if (remaining != signal) {
+            signal.stop();
+        }
+    }
+
+    public void signal(String key) {
+        Signal signal = signals.get(key);
+        if (signal != null) {
+            signal.fire();
+        }
+    }
+
+    /**
+     * 每个 Signal 使用独立的监听器：同一 key 的旧 Signal 退订时只移除自己，不影响随后新建的 Signal 的订阅
+     */
+    public static final class Signal {
+        private final ChannelTopic topic;
+        private final MessageListener listener = (message, pattern) -> fire();
+        private final Object subscription = new Object();
+        private CountDownLatch latch = new CountDownLatch(1);
+        private int waiters;
+        @Nullable
+        private RedisMessageListenerContainer listening;
+        private boolean stopped;
+
+        private Signal(String channel) {
+            this.topic = new ChannelTopic(channel);
+        }
+
+        /**
+         * 在加锁尝试之前取得当前闩锁，尝试失败后再等待它，避免丢失两者之间发生的释放
+         */
+        public synchronized CountDownLatch latch() {
+            return latch;
+        }
+
+        synchronized void fire() {
+            CountDownLatch fired = latch;
+            latch = new CountDownLatch(1);
+            fired.countDown();
+        }
+
+        void listen(RedisMessageListenerContainer container) {
+            synchronized (subscription) {
+                if (stopped || listening != null) {
+                    return;
+                }
+                try {
+                    container.addMessageListener(listener, topic);
+                    listening = container;
+                } catch (RuntimeException e) {
+                    log.warn("subscribe release channel failed, fall back to safety timeout channel={}, msg={}",
+                            topic.getTopic(), e.getMessage());
+                }
+            }
+        }
+
+        void stop() {
+            synchronized (subscription) {
+                stopped = true;
+                if (listening == null) {
+                    return;
+                }
+                try {
+                    listening.removeMessageListener(listener, topic);
+                } catch (RuntimeException e) {
+                    log.warn("unsubscribe release channel failed channel={}, msg={}", topic.getTopic(), e.getMessage());
+                }
+                listening = null;
+            }
+        }
+    }
+}
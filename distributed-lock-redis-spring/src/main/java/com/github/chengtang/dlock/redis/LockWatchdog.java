@@ -0,0 +1,237 @@
+package com.github.chengtang.dlock.redis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 租约看门狗
+ * 以较短租约持有锁，由单个调度线程批量续期
+ */
+@Slf4j
+public class LockWatchdog {
+    /**
+     * 写锁为字符串值（令牌）；读锁为哈希（读者令牌 -> 过期时间戳）、信号量为有序集合（令牌 -> 过期时间戳），
+     * 续期时同时刷新持有者自身的过期时间
+     */
+    private static final String RENEW_LUA =
+            "redis.replicate_commands() " +
+                    "local t = redis.call('time') " +
+                    "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) " +
+                    "local lease = tonumber(ARGV[1]) " +
+                    "local r = {} " +
+                    "for i = 1, #KEYS do " +
+                    "local kind = redis.call('type', KEYS[i]).ok " +
+                    "if kind == 'string' and redis.call('get', KEYS[i]) == ARGV[i + 1] then " +
+                    "redis.call('pexpire', KEYS[i], lease) r[i] = 1 " +
+                    "elseif kind == 'hash' and redis.call('hexists', KEYS[i], ARGV[i + 1]) == 1 then " +
+                    "redis.call('hset', KEYS[i], ARGV[i + 1], now + lease) " +
+                    "if redis.call('pttl', KEYS[i]) < lease then redis.call('pexpire', KEYS[i], lease) end " +
+                    "r[i] = 1 " +
+                    "elseif kind == 'zset' and redis.call('zscore', KEYS[i], ARGV[i + 1]) then " +
+                    "redis.call('zadd', KEYS[i], 'XX', now + lease, ARGV[i + 1]) " +
+                    "if redis.call('pttl', KEYS[i]) < lease then redis.call('pexpire', KEYS[i], lease) end " +
+                    "r[i] = 1 " +
+                    "else r[i] = 0 end " +
+                    "end " +
+                    "return r";
+
+    private final long leaseMillis;
+    private final long renewIntervalMillis;
+    private final int batchSize;
+    private final DefaultRedisScript<List> renewScript;
+    private final Set<Lease> leases = ConcurrentHashMap.newKeySet();
+    private final StringRedisTemplate redis;
+    private volatile boolean groupBySlot;
+    private volatile ScheduledExecutorService scheduler;
+
+    public LockWatchdog(StringRedisTemplate redisTemplate, long leaseMillis, long renewIntervalMillis, int batchSize) {
+        if (renewIntervalMillis <= 0 || renewIntervalMillis >= leaseMillis) {
+            throw new IllegalArgumentException("renewInterval must be in (0, lease): lease=" + leaseMillis
+                    + ", renewInterval=" + renewIntervalMillis);
+        }
+        this.redis = Objects.requireNonNull(redisTemplate, "redisTemplate");
+        this.leaseMillis = leaseMillis;
+        this.renewIntervalMillis = renewIntervalMillis;
+        this.batchSize = Math.max(1, batchSize);
+        this.renewScript = new DefaultRedisScript<>();
+        this.renewScript.setScriptText(RENEW_LUA);
+        this.renewScript.setResultType(List.class);
+    }
+
+    public long leaseMillis() {
+        return leaseMillis;
+    }
+
+    public int watching() {
+        return leases.size();
+    }
+
+    public void setGroupBySlot(boolean groupBySlot) {
+        this.groupBySlot = groupBySlot;
+    }
+
+    void watch(String key, String token) {
+        leases.add(new Lease(key, token));
+        if (scheduler == null) {
+            start();
+        }
+    }
+
+    void unwatch(String key, String token) {
+        leases.remove(new Lease(key, token));
+    }
+
+    private synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+        ScheduledExecutorService s = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dlock-watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        s.scheduleWithFixedDelay(this::renewAll, renewIntervalMillis, renewIntervalMillis, TimeUnit.MILLISECONDS);
+        scheduler = s;
+    }
+
+    void renewAll() {
+        if (leases.isEmpty()) {
+            return;
+        }
+        if (groupBySlot) {
+            renewBySlot(leases);
+            return;
+        }
+        List<Lease> failed = renewBatches(leases);
+        if (failed.isEmpty()) {
+            return;
+        }
+        // 失败的批次跨越多个 slot 时按 slot 重试；首组同样失败说明并非 CROSSSLOT（如连接异常），放弃本周期
+        if (spansSlots(failed) && renewBySlot(failed)) {
+            groupBySlot = true;
+            log.warn("cross-slot lease renew failed, switched to per-slot batches leases={}", failed.size());
+        }
+    }
+
+    private List<Lease> renewBatches(Collection<Lease> candidates) {
+        List<Lease> failed = new ArrayList<>();
+        List<Lease> batch = new ArrayList<>(Math.min(candidates.size(), batchSize));
+        for (Lease lease : candidates) {
+            batch.add(lease);
+            if (batch.size() >= batchSize) {
+                if (!renew(batch)) {
+                    failed.addAll(batch);
+                }
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty() && !renew(batch)) {
+            failed.addAll(batch);
+        }
+        return failed;
+    }
+
+    private boolean renewBySlot(Collection<Lease> candidates) {
+        Map<Integer, List<Lease>> bySlot = new HashMap<>();
+        for (Lease lease : candidates) {
+            bySlot.computeIfAbsent(ClusterSlotHashUtil.calculateSlot(lease.key), s -> new ArrayList<>()).add(lease);
+        }
+        boolean first = true;
+        for (List<Lease> group : bySlot.values()) {
+            List<Lease> failed = renewBatches(group);
+            if (first && failed.size() == group.size()) {
+                return false;
+            }
+            first = false;
+        }
+        return true;
+    }
+
+    private static boolean spansSlots(List<Lease> candidates) {
+        int slot = ClusterSlotHashUtil.calculateSlot(candidates.get(0).key);
+        for (Lease lease : candidates) {
+            if (ClusterSlotHashUtil.calculateSlot(lease.key) != slot) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean renew(List<Lease> batch) {
+        List<String> keys = new ArrayList<>(batch.size());
+        Object[] args = new Object[batch.size() + 1];
+        args[0] = String.valueOf(leaseMillis);
+        for (int i = 0; i < batch.size(); i++) {
+            keys.add(batch.get(i).key);
+            args[i + 1] = batch.get(i).token;
+        }
+        List<?> result;
+        try {
+            result = redis.execute(renewScript, keys, args);
+        } catch (Exception e) {
+            log.warn("lease renew failed keys={}, msg={}", keys.size(), e.getMessage());
+            return false;
+        }
+        if (result == null) {
+            return true;
+        }
+        for (int i = 0; i < batch.size() && i < result.size(); i++) {
+            if (!Long.valueOf(1L).equals(result.get(i)) && leases.remove(batch.get(i)) && log.isWarnEnabled()) {
+                log.warn("lease lost, renew stopped key={}", keys.get(i));
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("lease renewed keys={}, lease={}ms", keys.size(), leaseMillis);
+        }
+        return true;
+    }
+
+    public synchronized void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        leases.clear();
+    }
+
+    private static final class Lease {
+        private final String key;
+        private final String token;
+
+        private Lease(String key, String token) {
+            this.key = key;
+            this.token = token;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Lease)) {
+                return false;
+            }
+            Lease other = (Lease) o;
+            return key.equals(other.key) && token.equals(other.token);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * key.hashCode() + token.hashCode();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.github.chengtang.dlock.redis;
+
+import com.github.chengtang.dlock.core.LockContext;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.LockObserver;
+import com.github.chengtang.dlock.core.LockTokenGenerator;
+import com.github.chengtang.dlock.core.NodeLockTokenGenerator;
+import com.github.chengtang.dlock.core.ReactiveDistributedLockClient;
+import com.github.chengtang.dlock.core.SpinBackoff;
+import com.github.chengtang.dlock.core.SpinWaitConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.lang.Nullable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+
+/**
+ * 基于 ReactiveStringRedisTemplate 的非阻塞锁客户端，脚本与 {@link RedisDistributedLockClient} 一致
+ */
+@Slf4j
+public class ReactiveRedisDistributedLockClient implements ReactiveDistributedLockClient {
+    private static final long MIN_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final ReactiveStringRedisTemplate redis;
+    private final DefaultRedisScript<Long> acquireScript;
+    private final DefaultRedisScript<Long> releaseScript;
+    @Nullable
+    private final LockReleaseNotifier releaseNotifier;
+    @Nullable
+    private final LockWatchdog watchdog;
+    private final LockObserver observer;
+    private LockTokenGenerator tokens = new NodeLockTokenGenerator();
+
+    public ReactiveRedisDistributedLockClient(ReactiveStringRedisTemplate redisTemplate) {
+        this(redisTemplate, null, null, LockObserver.NOOP);
+    }
+
+    public ReactiveRedisDistributedLockClient(ReactiveStringRedisTemplate redisTemplate,
+                                              @Nullable LockReleaseNotifier releaseNotifier,
+                                              @Nullable LockWatchdog watchdog, LockObserver observer) {
+        this.redis = Objects.requireNonNull(redisTemplate, "redisTemplate");
+        this.releaseNotifier = releaseNotifier;
+        this.watchdog = watchdog;
+        this.observer = Objects.requireNonNull(observer, "observer");
+        this.acquireScript = new DefaultRedisScript<>(RedisDistributedLockClient.ACQUIRE_LUA, Long.class);
+        this.releaseScript = new DefaultRedisScript<>();
+        this.releaseScript.setScriptText(RedisDistributedLockClient.RELEASE_LUA);
+        this.releaseScript.setResultType(Long.class);
+    }
+
+    public void setTokenGenerator(LockTokenGenerator tokens) {
+        this.tokens = Objects.requireNonNull(tokens, "tokens");
+    }
+
+    @Override
+    public Mono<LockHandle> tryLock(String key, long leaseTime, TimeUnit unit) {
+        return Mono.deferContextual(ctx -> {
+            String name = ctx.getOrDefault(LockContext.NAME_CONTEXT_KEY, LockContext.UNNAMED);
+            return acquire(name, key, tokens.next(), leaseTime, unit, 1, holderTtl -> {
+                observer.onAttempts(name, key, 1, false);
+                return Mono.empty();
+            });
+        });
+    }
+
+    private Mono<LockHandle> acquire(String name, String key, String token, long leaseTime, TimeUnit unit, int attempts,
+                                     LongFunction<Mono<LockHandle>> onBusy) {
+        return Mono.defer(() -> {
+            boolean watched = leaseTime < 0;
+            if (watched && watchdog == null) {
+                return Mono.error(new IllegalArgumentException("leaseTime < 0 requires a LockWatchdog, key=" + key));
+            }
+            long leaseMillis = watched ? watchdog.leaseMillis() : unit.toMillis(leaseTime);
+            return redis.execute(acquireScript, Collections.singletonList(key), Arrays.asList(token, String.valueOf(leaseMillis)))
+                    .next()
+                    .defaultIfEmpty(-1L)
+                    .flatMap(holderTtl -> {
+                        if (holderTtl != 0L) {
+                            return onBusy.apply(holderTtl);
+                        }
+                        if (watched) {
+                            watchdog.watch(key, token);
+                        }
+                        if (log.isDebugEnabled()) {
+                            log.debug("lock acquired key={}, lease={} {}", key, leaseTime, unit);
+                        }
+                        observer.onAttempts(name, key, attempts, true);
+                        return Mono.just(new LockHandle(key, token));
+                    });
+        });
+    }
+
+    @Override
+    public Mono<LockHandle> tryLock(String key, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin) {
+        return Mono.deferContextual(ctx -> {
+            String name = ctx.getOrDefault(LockContext.NAME_CONTEXT_KEY, LockContext.UNNAMED);
+            long deadline = System.nanoTime() + unit.toNanos(waitTime);
+            return attempt(name, key, tokens.next(), leaseTime, unit, spin, deadline, 1, spin == null ? null : new SpinBackoff(spin));
+        });
+    }
+
+    private Mono<LockHandle> attempt(String name, String key, String token, long leaseTime, TimeUnit unit, SpinWaitConfig spin,
+                                     long deadline, int attempts, @Nullable SpinBackoff backoff) {
+        return acquire(name, key, token, leaseTime, unit, attempts, holderTtl -> {
+            long remaining = deadline - System.nanoTime();
+            if (spin == null || (spin.maxAttempts() > 0 && attempts >= spin.maxAttempts()) || remaining <= 0) {
+                observer.onAttempts(name, key, attempts, false);
+                return Mono.empty();
+            }
+            long holderTtlNanos = holderTtl > 0 ? TimeUnit.MILLISECONDS.toNanos(holderTtl) : -1L;
+            long interval = backoff.next(holderTtlNanos > 0 ? holderTtlNanos : 0L);
+            if (holderTtlNanos > 0) {
+                interval = Math.min(interval, holderTtlNanos);
+            }
+            long delay = Math.min(Math.max(interval, MIN_RETRY_NANOS), remaining);
+            if (log.isDebugEnabled()) {
+                log.debug("spin wait key={}, attempt={}, nextIntervalNanos={}", key, attempts, delay);
+            }
+            return Mono.delay(Duration.ofNanos(delay))
+                    .then(attempt(name, key, token, leaseTime, unit, spin, deadline, attempts + 1, backoff));
+        });
+    }
+
+    @Override
+    public Mono<Void> unlock(LockHandle handle) {
+        return Mono.deferContextual(ctx -> {
+            String name = ctx.getOrDefault(LockContext.NAME_CONTEXT_KEY, LockContext.UNNAMED);
+            String key = handle.key();
+            String token = handle.token();
+            if (watchdog != null) {
+                watchdog.unwatch(key, token);
+            }
+            List<String> args = releaseNotifier == null
+                    ? Collections.singletonList(token)
+                    : Arrays.asList(token, releaseNotifier.channel(key));
+            return redis.execute(releaseScript, Collections.singletonList(key), args)
+                    .next()
+                    .defaultIfEmpty(0L)
+                    .doOnNext(released -> {
+                        if (releaseNotifier != null) {
+                            releaseNotifier.signal(key);
+                        }
+                        if (released == 0L) {
+                            observer.onReleaseMissed(name, key);
+                            if (log.isDebugEnabled()) {
+                                log.debug("unlock missed, lock no longer owned key={}", key);
+                            }
+                        } else if (log.isDebugEnabled()) {
+                            log.debug("unlock executed for key={}", key);
+                        }
+                    })
+                    .then();
+        });
+    }
+}
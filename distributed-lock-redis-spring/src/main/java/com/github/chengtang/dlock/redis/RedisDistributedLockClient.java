@@ -2,105 +2,876 @@ package com.github.chengtang.dlock.redis;
 
 import com.github.chengtang.dlock.annotation.SpinWaitStrategy;
 import com.github.chengtang.dlock.core.DistributedLockClient;
+import com.github.chengtang.dlock.core.HoldTimeEstimator;
+import com.github.chengtang.dlock.core.LockContext;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.LockObserver;
+import com.github.chengtang.dlock.core.LockTokenGenerator;
+import com.github.chengtang.dlock.core.NodeLockTokenGenerator;
+import com.github.chengtang.dlock.core.SpinBackoff;
 import com.github.chengtang.dlock.core.SpinWaitConfig;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.lang.Nullable;
 
-import java.time.Duration;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.UUID;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
 @Slf4j
 public class RedisDistributedLockClient implements DistributedLockClient {
-    private static final String RELEASE_LUA =
-            "if redis.call('get', KEYS[1]) == ARGV[1] then " +
-                    "return redis.call('del', KEYS[1]) " +
+    private static final int MAX_HOLD_TIME_KEYS = 10_000;
+    private static final long RELEASE_QUEUED = -1L;
+    /**
+     * 加锁并在失败时于同一次往返返回持有者剩余租约：0 表示获取成功，否则为持有者 PTTL 毫秒（至少为 1；无过期时间为 -1）
+     */
+    static final String ACQUIRE_LUA =
+            "if redis.call('set', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then return 0 end " +
+                    "local ttl = redis.call('pttl', KEYS[1]) " +
+                    "if ttl == 0 then return 1 end " +
+                    "return ttl";
+    /**
+     * fencing 加锁：空闲时对 key 的计数器 INCR 并以计数值作为令牌写入，返回计数值（>= 1），计数器过期时间随之刷新为 ARGV[2]；
+     * 被占用时返回持有者 PTTL 的相反数（至少为 1），持有者无过期时间时返回 0
+     */
+    private static final String FENCED_ACQUIRE_LUA =
+            "if redis.call('exists', KEYS[1]) == 1 then " +
+                    "local ttl = redis.call('pttl', KEYS[1]) " +
+                    "if ttl == 0 then return -1 end " +
+                    "if ttl > 0 then return -ttl end " +
+                    "return 0 end " +
+                    "local fence = redis.call('incr', KEYS[2]) " +
+                    "redis.call('pexpire', KEYS[2], ARGV[2]) " +
+                    "redis.call('set', KEYS[1], fence, 'PX', ARGV[1]) " +
+                    "return fence";
+    static final String RELEASE_LUA =
+            "if redis.call('type', KEYS[1]).ok == 'string' and redis.call('get', KEYS[1]) == ARGV[1] then " +
+                    "local r = redis.call('del', KEYS[1]) " +
+                    "if ARGV[2] then redis.call('publish', ARGV[2], '1') end " +
+                    "return r " +
                     "else return 0 end";
+    private static final String ACQUIRE_ALL_LUA =
+            "for i = 1, #KEYS do " +
+                    "if redis.call('exists', KEYS[i]) == 1 then return 0 end " +
+                    "end " +
+                    "for i = 1, #KEYS do redis.call('set', KEYS[i], ARGV[1], 'PX', ARGV[2]) end " +
+                    "return 1";
+    private static final String RELEASE_ALL_LUA =
+            "local n = 0 " +
+                    "for i = 1, #KEYS do " +
+                    "if redis.call('type', KEYS[i]).ok == 'string' and redis.call('get', KEYS[i]) == ARGV[1] then " +
+                    "n = n + redis.call('del', KEYS[i]) " +
+                    "if ARGV[2] then redis.call('publish', ARGV[2] .. KEYS[i], '1') end " +
+                    "end " +
+                    "end " +
+                    "return n";
+    /**
+     * 读锁：key 为哈希，字段为读者令牌、值为该读者的过期时间戳（Redis TIME，毫秒）；
+     * key 为字符串（写锁持有中）时失败；加锁时顺带清理已过期的读者，key 的 TTL 不小于任一读者的租约
+     */
+    private static final String READ_ACQUIRE_LUA =
+            "redis.replicate_commands() " +
+                    "local kind = redis.call('type', KEYS[1]).ok " +
+                    "if kind ~= 'none' and kind ~= 'hash' then return 0 end " +
+                    "local t = redis.call('time') " +
+                    "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) " +
+                    "local lease = tonumber(ARGV[2]) " +
+                    "if kind == 'hash' then " +
+                    "local f = redis.call('hgetall', KEYS[1]) " +
+                    "for i = 1, #f, 2 do if tonumber(f[i + 1]) <= now then redis.call('hdel', KEYS[1], f[i]) end end " +
+                    "end " +
+                    "redis.call('hset', KEYS[1], ARGV[1], now + lease) " +
+                    "if redis.call('pttl', KEYS[1]) < lease then redis.call('pexpire', KEYS[1], lease) end " +
+                    "return 1";
+    /**
+     * 移除读者令牌；最后一个读者离开时 key 随空哈希删除并发布释放消息，否则把 TTL 收缩到剩余读者的最晚过期时间
+     */
+    private static final String READ_RELEASE_LUA =
+            "redis.replicate_commands() " +
+                    "if redis.call('type', KEYS[1]).ok ~= 'hash' or redis.call('hdel', KEYS[1], ARGV[1]) == 0 then return 0 end " +
+                    "local f = redis.call('hvals', KEYS[1]) " +
+                    "if #f == 0 then " +
+                    "if ARGV[2] then redis.call('publish', ARGV[2], '1') end " +
+                    "return 1 end " +
+                    "local t = redis.call('time') " +
+                    "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) " +
+                    "local latest = 0 " +
+                    "for i = 1, #f do latest = math.max(latest, tonumber(f[i])) end " +
+                    "if latest > now then redis.call('pexpire', KEYS[1], latest - now) else redis.call('del', KEYS[1]) end " +
+                    "return 1";
+    /**
+     * 信号量：key 为有序集合，成员为持有者令牌、分值为过期时间戳；先清理过期成员，再在未满 ARGV[3] 个时加入
+     */
+    private static final String PERMIT_ACQUIRE_LUA =
+            "redis.replicate_commands() " +
+                    "local kind = redis.call('type', KEYS[1]).ok " +
+                    "if kind ~= 'none' and kind ~= 'zset' then return 0 end " +
+                    "local t = redis.call('time') " +
+                    "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) " +
+                    "local lease = tonumber(ARGV[2]) " +
+                    "redis.call('zremrangebyscore', KEYS[1], '-inf', now) " +
+                    "if redis.call('zcard', KEYS[1]) >= tonumber(ARGV[3]) then return 0 end " +
+                    "redis.call('zadd', KEYS[1], now + lease, ARGV[1]) " +
+                    "if redis.call('pttl', KEYS[1]) < lease then redis.call('pexpire', KEYS[1], lease) end " +
+                    "return 1";
+    /**
+     * 归还许可；每次归还都发布释放消息（空出一个许可即可唤醒等待者），TTL 收缩到剩余持有者的最晚过期时间
+     */
+    private static final String PERMIT_RELEASE_LUA =
+            "redis.replicate_commands() " +
+                    "if redis.call('type', KEYS[1]).ok ~= 'zset' or redis.call('zrem', KEYS[1], ARGV[1]) == 0 then return 0 end " +
+                    "if ARGV[2] then redis.call('publish', ARGV[2], '1') end " +
+                    "local last = redis.call('zrange', KEYS[1], -1, -1, 'WITHSCORES') " +
+                    "if #last == 0 then return 1 end " +
+                    "local t = redis.call('time') " +
+                    "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) " +
+                    "local latest = tonumber(last[2]) " +
+                    "if latest > now then redis.call('pexpire', KEYS[1], latest - now) else redis.call('del', KEYS[1]) end " +
+                    "return 1";
+    /**
+     * 公平锁公共片段：KEYS[2] 为等待队列（列表，元素为 令牌|租约毫秒），KEYS[3] 为等待者超时（有序集合，令牌 -> 等待截止时间戳）
+     */
+    private static final String FAIR_COMMON_LUA =
+            "redis.replicate_commands() " +
+                    "local t = redis.call('time') " +
+                    "local now = tonumber(t[1]) * 1000 + math.floor(tonumber(t[2]) / 1000) " +
+                    "local function split(e) local i = string.find(e, '|', 1, true) return string.sub(e, 1, i - 1), string.sub(e, i + 1) end " +
+                    "local function handoff() " +
+                    "while true do " +
+                    "local head = redis.call('lpop', KEYS[2]) " +
+                    "if not head then return false end " +
+                    "local ht, hl = split(head) " +
+                    "local deadline = redis.call('zscore', KEYS[3], ht) " +
+                    "redis.call('zrem', KEYS[3], ht) " +
+                    "if deadline and tonumber(deadline) > now then redis.call('set', KEYS[1], ht, 'PX', hl) return true end " +
+                    "end end ";
+    /**
+     * 公平加锁：锁空闲且队首（跳过已超时的等待者）是自己或队列为空时获取；锁空闲但队首是他人时（持有者租约过期未释放）
+     * 直接移交给队首；ARGV[3] > 0 时未获取的调用者以 ARGV[3] 毫秒的等待截止时间入队（已在队中则不重复入队）
+     */
+    private static final String FAIR_ACQUIRE_LUA = FAIR_COMMON_LUA +
+            "local kind = redis.call('type', KEYS[1]).ok " +
+            "if kind == 'string' and redis.call('get', KEYS[1]) == ARGV[1] then return 1 end " +
+            "local entry = ARGV[1] .. '|' .. ARGV[2] " +
+            "if kind == 'none' then " +
+            "while true do " +
+            "local head = redis.call('lindex', KEYS[2], 0) " +
+            "if not head then break end " +
+            "local ht = split(head) " +
+            "local deadline = redis.call('zscore', KEYS[3], ht) " +
+            "if deadline and tonumber(deadline) > now then break end " +
+            "redis.call('lpop', KEYS[2]) redis.call('zrem', KEYS[3], ht) " +
+            "end " +
+            "local head = redis.call('lindex', KEYS[2], 0) " +
+            "if not head or head == entry then " +
+            "if head then redis.call('lpop', KEYS[2]) redis.call('zrem', KEYS[3], ARGV[1]) end " +
+            "redis.call('set', KEYS[1], ARGV[1], 'PX', ARGV[2]) " +
+            "return 1 end " +
+            "handoff() " +
+            "end " +
+            "local wait = tonumber(ARGV[3]) " +
+            "if wait > 0 and not redis.call('zscore', KEYS[3], ARGV[1]) then " +
+            "redis.call('rpush', KEYS[2], entry) " +
+            "redis.call('zadd', KEYS[3], now + wait, ARGV[1]) " +
+            "for i = 2, 3 do if redis.call('pttl', KEYS[i]) < wait then redis.call('pexpire', KEYS[i], wait) end end " +
+            "end " +
+            "return 0";
+    /**
+     * 公平释放：令牌校验后把锁直接移交给队首仍在等待的调用者，队列为空时删除锁；随后发布释放消息唤醒等待者检查
+     */
+    private static final String FAIR_RELEASE_LUA = FAIR_COMMON_LUA +
+            "if redis.call('type', KEYS[1]).ok ~= 'string' or redis.call('get', KEYS[1]) ~= ARGV[1] then return 0 end " +
+            "if not handoff() then redis.call('del', KEYS[1]) end " +
+            "if ARGV[2] then redis.call('publish', ARGV[2], '1') end " +
+            "return 1";
+    /**
+     * 放弃等待：移出队列；若锁已在此之前移交给自己则返回 1，由调用方作为加锁成功处理
+     */
+    private static final String FAIR_CANCEL_LUA =
+            "redis.call('lrem', KEYS[2], 0, ARGV[1] .. '|' .. ARGV[2]) " +
+                    "redis.call('zrem', KEYS[3], ARGV[1]) " +
+                    "if redis.call('type', KEYS[1]).ok == 'string' and redis.call('get', KEYS[1]) == ARGV[1] then return 1 end " +
+                    "return 0";
 
     private final StringRedisTemplate redis;
+    private final DefaultRedisScript<Long> acquireScript;
+    private final DefaultRedisScript<Long> fencedAcquireScript;
     private final DefaultRedisScript<Long> releaseScript;
-    private final ThreadLocal<Map<String, String>> localTokens = ThreadLocal.withInitial(ConcurrentHashMap::new);
+    private final DefaultRedisScript<Long> acquireAllScript;
+    private final DefaultRedisScript<Long> releaseAllScript;
+    private final DefaultRedisScript<Long> readAcquireScript;
+    private final DefaultRedisScript<Long> readReleaseScript;
+    private final DefaultRedisScript<Long> permitAcquireScript;
+    private final DefaultRedisScript<Long> permitReleaseScript;
+    private final DefaultRedisScript<Long> fairAcquireScript;
+    private final DefaultRedisScript<Long> fairReleaseScript;
+    private final DefaultRedisScript<Long> fairCancelScript;
+    @Nullable
+    private final LockReleaseNotifier releaseNotifier;
+    @Nullable
+    private final LockWatchdog watchdog;
+    private final LockObserver observer;
+    private final Map<String, LockHold> holds = new ConcurrentHashMap<>();
+    private boolean groupKeysBySlot;
+    private boolean fair;
+    private boolean fencing;
+    private long fenceTtlMillis = TimeUnit.DAYS.toMillis(30);
+    private LockTokenGenerator tokens = new NodeLockTokenGenerator();
+    @Nullable
+    private AsyncLockReleaser releaser;
+    private final HoldTimeEstimator holdTimes = new HoldTimeEstimator(MAX_HOLD_TIME_KEYS);
+    private volatile boolean recordHoldTimes;
 
     public RedisDistributedLockClient(StringRedisTemplate redisTemplate) {
+        this(redisTemplate, null, null, LockObserver.NOOP);
+    }
+
+    public RedisDistributedLockClient(StringRedisTemplate redisTemplate, @Nullable LockReleaseNotifier releaseNotifier,
+                                      @Nullable LockWatchdog watchdog, LockObserver observer) {
         this.redis = Objects.requireNonNull(redisTemplate, "redisTemplate");
+        this.releaseNotifier = releaseNotifier;
+        this.watchdog = watchdog;
+        this.observer = Objects.requireNonNull(observer, "observer");
+        this.acquireScript = new DefaultRedisScript<>(ACQUIRE_LUA, Long.class);
+        this.fencedAcquireScript = new DefaultRedisScript<>(FENCED_ACQUIRE_LUA, Long.class);
         this.releaseScript = new DefaultRedisScript<>();
         this.releaseScript.setScriptText(RELEASE_LUA);
         this.releaseScript.setResultType(Long.class);
+        this.acquireAllScript = new DefaultRedisScript<>(ACQUIRE_ALL_LUA, Long.class);
+        this.releaseAllScript = new DefaultRedisScript<>(RELEASE_ALL_LUA, Long.class);
+        this.readAcquireScript = new DefaultRedisScript<>(READ_ACQUIRE_LUA, Long.class);
+        this.readReleaseScript = new DefaultRedisScript<>(READ_RELEASE_LUA, Long.class);
+        this.permitAcquireScript = new DefaultRedisScript<>(PERMIT_ACQUIRE_LUA, Long.class);
+        this.permitReleaseScript = new DefaultRedisScript<>(PERMIT_RELEASE_LUA, Long.class);
+        this.fairAcquireScript = new DefaultRedisScript<>(FAIR_ACQUIRE_LUA, Long.class);
+        this.fairReleaseScript = new DefaultRedisScript<>(FAIR_RELEASE_LUA, Long.class);
+        this.fairCancelScript = new DefaultRedisScript<>(FAIR_CANCEL_LUA, Long.class);
+    }
+
+    public void loadScripts() {
+        List<DefaultRedisScript<Long>> scripts = Arrays.asList(acquireScript, fencedAcquireScript, releaseScript, acquireAllScript,
+                releaseAllScript, readAcquireScript, readReleaseScript, permitAcquireScript, permitReleaseScript,
+                fairAcquireScript, fairReleaseScript, fairCancelScript);
+        redis.execute((RedisCallback<Void>) connection -> {
+            for (DefaultRedisScript<Long> script : scripts) {
+                connection.scriptingCommands().scriptLoad(script.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+            }
+            return null;
+        });
+        if (log.isDebugEnabled()) {
+            log.debug("lock scripts loaded count={}", scripts.size());
+        }
+    }
+
+    public void setGroupKeysBySlot(boolean groupKeysBySlot) {
+        this.groupKeysBySlot = groupKeysBySlot;
+    }
+
+    public void setFair(boolean fair) {
+        this.fair = fair;
+    }
+
+    public void setFencing(boolean fencing) {
+        this.fencing = fencing;
+    }
+
+    /**
+     * 计数器只在存在期间单调，key 闲置超过 ttl 后重新从 1 计数
+     */
+    public void setFenceTtl(long ttl, TimeUnit unit) {
+        if (ttl <= 0) {
+            throw new IllegalArgumentException("fence ttl must be > 0: " + ttl);
+        }
+        this.fenceTtlMillis = unit.toMillis(ttl);
+    }
+
+    public void setTokenGenerator(LockTokenGenerator tokens) {
+        this.tokens = Objects.requireNonNull(tokens, "tokens");
+    }
+
+    public void setAsyncReleaser(@Nullable AsyncLockReleaser releaser) {
+        this.releaser = releaser;
     }
 
     @Override
-    public boolean tryLock(String key, long leaseTime, TimeUnit unit) {
-        String token = UUID.randomUUID().toString();
-        boolean ok = Boolean.TRUE.equals(redis.opsForValue()
-                .setIfAbsent(key, token, Duration.ofMillis(unit.toMillis(leaseTime))));
+    public LockHandle tryLock(String key, long leaseTime, TimeUnit unit) {
+        String token = tokens.next();
+        LockHandle handle = fair ? acquireFair(key, token, leaseTime, unit, 0L) : acquire(key, token, leaseTime, unit, null);
+        observer.onAttempts(LockContext.name(), key, 1, handle != null);
+        return handle;
+    }
+
+    @Nullable
+    private LockHandle acquire(String key, String token, long leaseTime, TimeUnit unit, @Nullable WaitState wait) {
+        LockHandle reentered = reenter(key);
+        if (reentered != null) {
+            return reentered;
+        }
+        settle(key);
+        long leaseMillis = leaseMillis(key, leaseTime, unit);
+        if (fencing) {
+            return acquireFenced(key, leaseTime, unit, leaseMillis, wait);
+        }
+        Long holderTtl = redis.execute(acquireScript, Collections.singletonList(key), token, String.valueOf(leaseMillis));
         String timeUnit = " " + unit;
-        if (ok) {
-            localTokens.get().put(key, token);
+        if (holderTtl == null || holderTtl != 0L) {
+            if (wait != null && holderTtl != null) {
+                wait.holderTtlMillis = holderTtl;
+            }
             if (log.isDebugEnabled()) {
-                log.debug("lock acquired key={}, lease={}{}", key, leaseTime, timeUnit);
+                log.debug("lock busy key={}, lease={}{}, holderTtl={}ms", key, leaseTime, timeUnit, holderTtl);
+            }
+            return null;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("lock acquired key={}, lease={}{}", key, leaseTime, timeUnit);
+        }
+        return owned(key, token, leaseTime < 0);
+    }
+
+    @Nullable
+    private LockHandle acquireFenced(String key, long leaseTime, TimeUnit unit, long leaseMillis, @Nullable WaitState wait) {
+        Long fence = redis.execute(fencedAcquireScript, Arrays.asList(key, fenceKey(key)), String.valueOf(leaseMillis),
+                String.valueOf(Math.max(fenceTtlMillis, leaseMillis)));
+        if (fence == null || fence <= 0L) {
+            if (wait != null && fence != null) {
+                wait.holderTtlMillis = fence == 0L ? -1L : -fence;
             }
-        } else {
             if (log.isDebugEnabled()) {
-                log.debug("lock busy key={}, lease={}{}", key, leaseTime, timeUnit);
+                log.debug("lock busy key={}, lease={} {}, holderTtl={}ms", key, leaseTime, unit, fence == null ? null : -fence);
             }
+            return null;
         }
-        return ok;
+        if (log.isDebugEnabled()) {
+            log.debug("lock acquired key={}, lease={} {}, fence={}", key, leaseTime, unit, fence);
+        }
+        return owned(LockHandle.fenced(key, fence), leaseTime < 0);
+    }
+
+    /**
+     * 同一次等待的多次尝试共用一个令牌，使其在队列中只占一个位置
+     */
+    @Nullable
+    private LockHandle acquireFair(String key, String token, long leaseTime, TimeUnit unit, long waitMillis) {
+        LockHandle reentered = reenter(key);
+        if (reentered != null) {
+            return reentered;
+        }
+        settle(key);
+        String leaseMillis = String.valueOf(leaseMillis(key, leaseTime, unit));
+        Long ok = redis.execute(fairAcquireScript, fairKeys(key), token, leaseMillis, String.valueOf(waitMillis));
+        if (ok == null || ok == 0L) {
+            if (log.isDebugEnabled()) {
+                log.debug("fair lock queued key={}, wait={}ms", key, waitMillis);
+            }
+            return null;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("fair lock acquired key={}, lease={} {}", key, leaseTime, unit);
+        }
+        return owned(key, token, leaseTime < 0);
+    }
+
+    private LockHandle tryLockFair(String key, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin) {
+        String token = tokens.next();
+        long deadline = System.nanoTime() + unit.toNanos(waitTime);
+        Attempt attempt = wait -> acquireFair(key, token, leaseTime, unit,
+                Math.max(1L, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+        LockHandle handle = releaseNotifier != null && spin != null
+                ? tryLockNotified(key, waitTime, unit, spin, releaseNotifier, attempt)
+                : spinAcquire(key, waitTime, unit, spin, attempt);
+        if (handle != null) {
+            return handle;
+        }
+        String leaseMillis = String.valueOf(leaseMillis(key, leaseTime, unit));
+        Long handedOff = redis.execute(fairCancelScript, fairKeys(key), token, leaseMillis);
+        if (handedOff != null && handedOff == 1L) {
+            if (log.isDebugEnabled()) {
+                log.debug("fair lock handed off at wait deadline key={}", key);
+            }
+            return owned(key, token, leaseTime < 0);
+        }
+        return null;
+    }
+
+    static List<String> fairKeys(String key) {
+        String base = hashTagged(key);
+        return Arrays.asList(key, base + ":queue", base + ":timeout");
+    }
+
+    static String fenceKey(String key) {
+        return hashTagged(key) + ":fence";
+    }
+
+    private static String hashTagged(String key) {
+        int open = key.indexOf('{');
+        int close = open < 0 ? -1 : key.indexOf('}', open + 1);
+        return close > open + 1 ? key : "{" + key + "}";
+    }
+
+    /**
+     * 本实例对 key 的释放仍在异步队列中时先同步执行，避免被自己尚未发出的释放挡住
+     */
+    private void settle(String key) {
+        AsyncLockReleaser r = releaser;
+        if (r != null) {
+            r.settle(key);
+        }
+    }
+
+    @Nullable
+    private LockHandle reenter(String key) {
+        LockHold held = holds.get(key);
+        if (held != null && held.owner == Thread.currentThread() && held.reenter()) {
+            if (log.isDebugEnabled()) {
+                log.debug("lock reentered key={}", key);
+            }
+            return held.handle;
+        }
+        return null;
+    }
+
+    private long leaseMillis(String key, long leaseTime, TimeUnit unit) {
+        if (leaseTime >= 0) {
+            return unit.toMillis(leaseTime);
+        }
+        if (watchdog == null) {
+            throw new IllegalArgumentException("leaseTime < 0 requires a LockWatchdog, key=" + key);
+        }
+        return watchdog.leaseMillis();
+    }
+
+    private LockHandle owned(String key, String token, boolean watched) {
+        return owned(new LockHandle(key, token), watched);
+    }
+
+    private LockHandle owned(LockHandle handle, boolean watched) {
+        holds.put(handle.key(), new LockHold(Thread.currentThread(), handle));
+        if (watched) {
+            watchdog.watch(handle.key(), handle.token());
+        }
+        return handle;
     }
 
     @Override
-    public boolean tryLock(String key, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin) {
-        long deadline = System.nanoTime() + TimeUnit.NANOSECONDS.convert(waitTime, unit);
+    public LockHandle tryLock(String key, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin) {
+        if (fair) {
+            return tryLockFair(key, waitTime, leaseTime, unit, spin);
+        }
+        String token = tokens.next();
+        if (releaseNotifier != null && spin != null) {
+            return tryLockNotified(key, waitTime, unit, spin, releaseNotifier, wait -> acquire(key, token, leaseTime, unit, wait));
+        }
+        return spinAcquire(key, waitTime, unit, spin, wait -> acquire(key, token, leaseTime, unit, wait));
+    }
+
+    @Override
+    public LockHandle tryReadLock(String key, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin) {
+        String token = tokens.next();
+        if (waitTime <= 0) {
+            LockHandle handle = acquireRead(key, token, leaseTime, unit);
+            observer.onAttempts(LockContext.name(), key, 1, handle != null);
+            return handle;
+        }
+        if (releaseNotifier != null && spin != null) {
+            return tryLockNotified(key, waitTime, unit, spin, releaseNotifier, wait -> acquireRead(key, token, leaseTime, unit));
+        }
+        return spinAcquire(key, waitTime, unit, spin, wait -> acquireRead(key, token, leaseTime, unit));
+    }
+
+    @Nullable
+    private LockHandle acquireRead(String key, String token, long leaseTime, TimeUnit unit) {
+        LockHandle reentered = reenter(key);
+        if (reentered != null) {
+            return reentered;
+        }
+        settle(key);
+        boolean watched = leaseTime < 0;
+        long leaseMillis = leaseMillis(key, leaseTime, unit);
+        Long ok = redis.execute(readAcquireScript, Collections.singletonList(key), token, String.valueOf(leaseMillis));
+        if (ok == null || ok == 0L) {
+            if (log.isDebugEnabled()) {
+                log.debug("read lock busy key={}", key);
+            }
+            return null;
+        }
+        if (watched) {
+            watchdog.watch(key, token);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("read lock acquired key={}, lease={} {}", key, leaseTime, unit);
+        }
+        return new LockHandle(key, token, true);
+    }
+
+    @Override
+    public LockHandle tryAcquirePermit(String key, int permits, long waitTime, long leaseTime, TimeUnit unit,
+                                       SpinWaitConfig spin) {
+        if (permits < 1) {
+            throw new IllegalArgumentException("permits must be >= 1: " + permits + ", key=" + key);
+        }
+        String token = tokens.next();
+        if (waitTime <= 0) {
+            LockHandle handle = acquirePermit(key, token, permits, leaseTime, unit);
+            observer.onAttempts(LockContext.name(), key, 1, handle != null);
+            return handle;
+        }
+        if (releaseNotifier != null && spin != null) {
+            return tryLockNotified(key, waitTime, unit, spin, releaseNotifier, wait -> acquirePermit(key, token, permits, leaseTime, unit));
+        }
+        return spinAcquire(key, waitTime, unit, spin, wait -> acquirePermit(key, token, permits, leaseTime, unit));
+    }
+
+    @Nullable
+    private LockHandle acquirePermit(String key, String token, int permits, long leaseTime, TimeUnit unit) {
+        settle(key);
+        boolean watched = leaseTime < 0;
+        long leaseMillis = leaseMillis(key, leaseTime, unit);
+        Long ok = redis.execute(permitAcquireScript, Collections.singletonList(key), token,
+                String.valueOf(leaseMillis), String.valueOf(permits));
+        if (ok == null || ok == 0L) {
+            if (log.isDebugEnabled()) {
+                log.debug("permits exhausted key={}, permits={}", key, permits);
+            }
+            return null;
+        }
+        if (watched) {
+            watchdog.watch(key, token);
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("permit acquired key={}, permits={}, lease={} {}", key, permits, leaseTime, unit);
+        }
+        return LockHandle.permit(key, token, permits);
+    }
+
+    private LockHandle spinAcquire(String key, long waitTime, TimeUnit unit, SpinWaitConfig spin, Attempt attempt) {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.NANOSECONDS.convert(waitTime, unit);
         int attempts = 0;
-        int intervalMs = Math.max(0, spin == null ? 0 : (int) spin.unit().toMillis(spin.interval()));
+        SpinBackoff backoff = spin == null ? null : new SpinBackoff(spin);
+        boolean adaptive = spin != null && spin.strategy() == SpinWaitStrategy.ADAPTIVE;
+        if (adaptive && !recordHoldTimes) {
+            recordHoldTimes = true;
+        }
+        WaitState wait = new WaitState();
+        LockHandle handle = null;
         while (System.nanoTime() <= deadline) {
-            if (tryLock(key, leaseTime, unit)) {
-                return true;
+            attempts++;
+            wait.holderTtlMillis = -1L;
+            handle = attempt.tryOnce(wait);
+            if (handle != null) {
+                break;
             }
-            if (spin != null) {
+            if (backoff == null || (spin.maxAttempts() > 0 && attempts >= spin.maxAttempts())) {
+                break;
+            }
+            long now = System.nanoTime();
+            long holderTtlNanos = wait.holderTtlNanos();
+            long hint = 0L;
+            if (adaptive) {
+                hint = holdTimes.remainingNanos(key, now - start);
+                if (hint == 0L && holderTtlNanos > 0) {
+                    hint = holderTtlNanos;
+                }
+            }
+            long sleepNanos = backoff.next(hint);
+            if (holderTtlNanos > 0) {
+                sleepNanos = Math.min(sleepNanos, holderTtlNanos);
+            }
+            sleepNanos = Math.min(sleepNanos, deadline - now);
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("spin wait key={}, attempt={}, sleptMs={}", key, attempts, TimeUnit.NANOSECONDS.toMillis(sleepNanos));
+                }
+            }
+        }
+        observer.onAttempts(LockContext.name(), key, attempts, handle != null);
+        return handle;
+    }
+
+    private LockHandle tryLockNotified(String key, long waitTime, TimeUnit unit, SpinWaitConfig spin,
+                                       LockReleaseNotifier notifier, Attempt attempt) {
+        long deadline = System.nanoTime() + TimeUnit.NANOSECONDS.convert(waitTime, unit);
+        int attempts = 0;
+        LockHandle handle = null;
+        WaitState wait = new WaitState();
+        LockReleaseNotifier.Signal signal = notifier.subscribe(key);
+        try {
+            while (true) {
+                CountDownLatch released = signal.latch();
                 attempts++;
+                wait.holderTtlMillis = -1L;
+                handle = attempt.tryOnce(wait);
+                if (handle != null) {
+                    return handle;
+                }
                 if (spin.maxAttempts() > 0 && attempts >= spin.maxAttempts()) {
-                    break;
+                    return null;
                 }
-                if (intervalMs > 0) {
-                    try {
-                        TimeUnit.MILLISECONDS.sleep(intervalMs);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
-                    if (spin.strategy() == SpinWaitStrategy.LINEAR) {
-                        intervalMs += spin.unit().toMillis(spin.interval());
-                    } else if (spin.strategy() == SpinWaitStrategy.EXPONENTIAL) {
-                        intervalMs = intervalMs * 2;
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return null;
+                }
+                try {
+                    long timeout = Math.min(remaining, notifier.safetyTimeoutNanos());
+                    // 租约到期不会发布释放消息，最迟在持有者租约到期时重试
+                    if (wait.holderTtlNanos() > 0) {
+                        timeout = Math.min(timeout, wait.holderTtlNanos());
                     }
+                    boolean woken = released.await(timeout, TimeUnit.NANOSECONDS);
                     if (log.isDebugEnabled()) {
-                        log.debug("spin wait key={}, attempt={}, nextIntervalMs={}", key, attempts, intervalMs);
+                        log.debug("release wait key={}, attempt={}, notified={}", key, attempts, woken);
                     }
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return null;
                 }
-            } else {
-                break;
             }
+        } finally {
+            notifier.unsubscribe(key, signal);
+            observer.onAttempts(LockContext.name(), key, attempts, handle != null);
         }
-        return false;
     }
 
     @Override
-    public void unlock(String key) {
-        String token = localTokens.get().remove(key);
-        if (token == null) {
-            if (log.isWarnEnabled()) {
-                log.warn("unlock skipped, no local token for key={}", key);
+    public LockHandle tryLockAll(List<String> keys, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin) {
+        List<String> sorted = new ArrayList<>(new TreeSet<>(keys));
+        if (sorted.isEmpty()) {
+            return null;
+        }
+        String token = tokens.next();
+        String multiKey = LockObserver.multiKey(sorted);
+        if (waitTime <= 0) {
+            LockHandle handle = acquireAll(sorted, token, leaseTime, unit);
+            observer.onAttempts(LockContext.name(), multiKey, 1, handle != null);
+            return handle;
+        }
+        return spinAcquire(multiKey, waitTime, unit, spin, wait -> acquireAll(sorted, token, leaseTime, unit));
+    }
+
+    @Nullable
+    private LockHandle acquireAll(List<String> keys, String token, long leaseTime, TimeUnit unit) {
+        boolean watched = leaseTime < 0;
+        if (watched && watchdog == null) {
+            throw new IllegalArgumentException("leaseTime < 0 requires a LockWatchdog, keys=" + keys);
+        }
+        String leaseMillis = String.valueOf(watched ? watchdog.leaseMillis() : unit.toMillis(leaseTime));
+        for (String key : keys) {
+            settle(key);
+        }
+        List<List<String>> groups = groups(keys);
+        for (int g = 0; g < groups.size(); g++) {
+            Long ok = redis.execute(acquireAllScript, groups.get(g), token, leaseMillis);
+            if (ok == null || ok == 0L) {
+                for (int r = g - 1; r >= 0; r--) {
+                    redis.execute(releaseAllScript, groups.get(r), token);
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("multi lock busy keys={}", keys);
+                }
+                return null;
+            }
+        }
+        List<LockHandle> parts = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            parts.add(new LockHandle(key, token));
+            if (watched) {
+                watchdog.watch(key, token);
             }
-            return;
         }
-        redis.execute(releaseScript, Collections.singletonList(key), token);
         if (log.isDebugEnabled()) {
+            log.debug("multi lock acquired keys={}, lease={} {}", keys, leaseTime, unit);
+        }
+        return LockHandle.of(parts);
+    }
+
+    @Override
+    public void unlockAll(LockHandle handle) {
+        List<LockHandle> parts = handle.parts();
+        if (parts.size() == 1) {
+            unlock(handle);
+            return;
+        }
+        String token = handle.token();
+        List<String> keys = new ArrayList<>(parts.size());
+        for (LockHandle part : parts) {
+            keys.add(part.key());
+            if (watchdog != null) {
+                watchdog.unwatch(part.key(), token);
+            }
+        }
+        long released = 0;
+        for (List<String> group : groups(keys)) {
+            Long n = releaseNotifier == null
+                    ? redis.execute(releaseAllScript, group, token)
+                    : redis.execute(releaseAllScript, group, token, releaseNotifier.channel(""));
+            released += n == null ? 0L : n;
+        }
+        if (releaseNotifier != null) {
+            for (String key : keys) {
+                releaseNotifier.signal(key);
+            }
+        }
+        if (released < keys.size()) {
+            observer.onReleaseMissed(LockContext.name(), handle.key());
+            if (log.isDebugEnabled()) {
+                log.debug("multi unlock missed {} of {} keys={}", keys.size() - released, keys.size(), keys);
+            }
+        } else if (log.isDebugEnabled()) {
+            log.debug("multi unlock executed for keys={}", keys);
+        }
+    }
+
+    private List<List<String>> groups(List<String> keys) {
+        if (!groupKeysBySlot) {
+            return Collections.singletonList(keys);
+        }
+        Map<Integer, List<String>> bySlot = new TreeMap<>();
+        for (String key : keys) {
+            bySlot.computeIfAbsent(ClusterSlotHashUtil.calculateSlot(key), s -> new ArrayList<>()).add(key);
+        }
+        return new ArrayList<>(bySlot.values());
+    }
+
+    @Override
+    public void unlock(LockHandle handle) {
+        String key = handle.key();
+        if (handle.shared() || handle.permits() > 0) {
+            unlockShared(handle);
+            return;
+        }
+        LockHold hold = holds.get(key);
+        if (hold != null && hold.handle == handle) {
+            int remaining = hold.exit();
+            if (remaining > 0) {
+                if (log.isDebugEnabled()) {
+                    log.debug("reentrant unlock key={}, holds={}", key, remaining);
+                }
+                return;
+            }
+            holds.remove(key, hold);
+            if (recordHoldTimes) {
+                holdTimes.record(key, System.nanoTime() - hold.acquiredAt);
+            }
+        }
+        String token = handle.token();
+        if (watchdog != null) {
+            watchdog.unwatch(key, token);
+        }
+        DefaultRedisScript<Long> script = fair ? fairReleaseScript : releaseScript;
+        List<String> keys = fair ? fairKeys(key) : Collections.singletonList(key);
+        long released = release(key, script, keys, token);
+        if (released == RELEASE_QUEUED) {
+            return;
+        }
+        if (released == 0L) {
+            observer.onReleaseMissed(LockContext.name(), key);
+            if (log.isDebugEnabled()) {
+                log.debug("unlock missed, lock no longer owned key={}", key);
+            }
+        } else if (log.isDebugEnabled()) {
             log.debug("unlock executed for key={}", key);
         }
     }
+
+    private long release(String key, DefaultRedisScript<Long> script, List<String> keys, String token) {
+        Object[] args = releaseNotifier == null ? new Object[]{token} : new Object[]{token, releaseNotifier.channel(key)};
+        AsyncLockReleaser r = releaser;
+        long released;
+        if (r != null && r.submit(key, script, keys, args)) {
+            released = RELEASE_QUEUED;
+            if (log.isDebugEnabled()) {
+                log.debug("unlock queued for key={}", key);
+            }
+        } else {
+            Long n = redis.execute(script, keys, args);
+            released = n == null ? 0L : n;
+        }
+        if (releaseNotifier != null) {
+            releaseNotifier.signal(key);
+        }
+        return released;
+    }
+
+    private void unlockShared(LockHandle handle) {
+        String key = handle.key();
+        String token = handle.token();
+        if (watchdog != null) {
+            watchdog.unwatch(key, token);
+        }
+        DefaultRedisScript<Long> script = handle.shared() ? readReleaseScript : permitReleaseScript;
+        long released = release(key, script, Collections.singletonList(key), token);
+        if (released == RELEASE_QUEUED) {
+            return;
+        }
+        if (released == 0L) {
+            observer.onReleaseMissed(LockContext.name(), key);
+            if (log.isDebugEnabled()) {
+                log.debug("shared unlock missed, holder no longer registered key={}, handle={}", key, handle);
+            }
+        } else if (log.isDebugEnabled()) {
+            log.debug("shared unlock executed for key={}, handle={}", key, handle);
+        }
+    }
+
+    private interface Attempt {
+        @Nullable
+        LockHandle tryOnce(WaitState wait);
+    }
+
+    private static final class WaitState {
+        private long holderTtlMillis = -1L;
+
+        long holderTtlNanos() {
+            return holderTtlMillis > 0 ? TimeUnit.MILLISECONDS.toNanos(holderTtlMillis) : -1L;
+        }
+    }
+
+    /**
+     * 本 JVM 对某个 key 的持有记录；加锁线程的嵌套加锁只增加计数，计数归零时才执行释放脚本
+     */
+    private static final class LockHold {
+        private final Thread owner;
+        private final LockHandle handle;
+        private final long acquiredAt = System.nanoTime();
+        private int count = 1;
+
+        private LockHold(Thread owner, LockHandle handle) {
+            this.owner = owner;
+            this.handle = handle;
+        }
+
+        /**
+         * 释放与重入可能发生在不同线程，计数为 0 表示正在释放，不能再重入
+         */
+        synchronized boolean reenter() {
+            if (count == 0) {
+                return false;
+            }
+            count++;
+            return true;
+        }
+
+        synchronized int exit() {
+            return --count;
+        }
+    }
 }
@@ -0,0 +1,63 @@
+package com.github.chengtang.dlock.redis;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.lang.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Objects;
+
+/**
+ * 基于 StringRedisTemplate 的 Redlock 节点
+ */
+public class RedisRedlockNode implements RedlockNode {
+    private final StringRedisTemplate redis;
+    @Nullable
+    private final DisposableBean connection;
+    private final DefaultRedisScript<Long> acquireScript = new DefaultRedisScript<>(RedisDistributedLockClient.ACQUIRE_LUA, Long.class);
+    private final DefaultRedisScript<Long> releaseScript = new DefaultRedisScript<>(RedisDistributedLockClient.RELEASE_LUA, Long.class);
+
+    public RedisRedlockNode(StringRedisTemplate redisTemplate) {
+        this(redisTemplate, null);
+    }
+
+    public RedisRedlockNode(StringRedisTemplate redisTemplate, @Nullable DisposableBean connection) {
+        this.redis = Objects.requireNonNull(redisTemplate, "redisTemplate");
+        this.connection = connection;
+    }
+
+    @Override
+    public boolean tryAcquire(String key, String token, long leaseMillis) {
+        Long holderTtl = redis.execute(acquireScript, Collections.singletonList(key), token, String.valueOf(leaseMillis));
+        return holderTtl != null && holderTtl == 0L;
+    }
+
+    @Override
+    public boolean release(String key, String token) {
+        Long released = redis.execute(releaseScript, Collections.singletonList(key), token);
+        return released != null && released == 1L;
+    }
+
+    @Override
+    public void loadScripts() {
+        redis.execute((RedisCallback<Void>) connection -> {
+            connection.scriptingCommands().scriptLoad(acquireScript.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+            connection.scriptingCommands().scriptLoad(releaseScript.getScriptAsString().getBytes(StandardCharsets.UTF_8));
+            return null;
+        });
+    }
+
+    @Override
+    public void close() {
+        if (connection != null) {
+            try {
+                connection.destroy();
+            } catch (Exception e) {
+                throw new IllegalStateException("close redlock node failed", e);
+            }
+        }
+    }
+}
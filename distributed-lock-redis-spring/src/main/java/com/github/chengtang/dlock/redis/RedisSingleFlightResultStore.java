@@ -0,0 +1,76 @@
+package com.github.chengtang.dlock.redis;
+
+import com.github.chengtang.dlock.core.SingleFlightResult;
+import com.github.chengtang.dlock.core.SingleFlightResultStore;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.lang.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 以锁 key + 后缀的短 TTL 字符串保存单飞结果
+ */
+@Slf4j
+public class RedisSingleFlightResultStore implements SingleFlightResultStore {
+    private final StringRedisTemplate redis;
+    private final RedisSerializer<Object> serializer;
+    private final String keySuffix;
+
+    public RedisSingleFlightResultStore(StringRedisTemplate redisTemplate) {
+        this(redisTemplate, new AllowListSerializationRedisSerializer(), ":result");
+    }
+
+    public RedisSingleFlightResultStore(StringRedisTemplate redisTemplate, RedisSerializer<Object> serializer, String keySuffix) {
+        this.redis = Objects.requireNonNull(redisTemplate, "redisTemplate");
+        this.serializer = Objects.requireNonNull(serializer, "serializer");
+        this.keySuffix = Objects.requireNonNull(keySuffix, "keySuffix");
+    }
+
+    @Override
+    public void publish(String key, SingleFlightResult result, long ttl, TimeUnit unit) {
+        byte[] value;
+        try {
+            value = serializer.serialize(result);
+        } catch (SerializationException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("single-flight result not serializable, skip publish key={}, msg={}", key, e.getMessage());
+            }
+            return;
+        }
+        if (value == null) {
+            return;
+        }
+        byte[] resultKey = resultKey(key);
+        redis.execute((RedisCallback<Boolean>) connection -> connection.stringCommands()
+                .set(resultKey, value, Expiration.from(ttl, unit), RedisStringCommands.SetOption.upsert()));
+    }
+
+    @Override
+    @Nullable
+    public SingleFlightResult fetch(String key) {
+        byte[] resultKey = resultKey(key);
+        byte[] value = redis.execute((RedisCallback<byte[]>) connection -> connection.stringCommands().get(resultKey));
+        if (value == null) {
+            return null;
+        }
+        try {
+            Object result = serializer.deserialize(value);
+            return result instanceof SingleFlightResult ? (SingleFlightResult) result : null;
+        } catch (SerializationException e) {
+            log.warn("single-flight result unreadable, ignored key={}, msg={}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    private byte[] resultKey(String key) {
+        return (key + keySuffix).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,307 @@
+package com.github.chengtang.dlock.redis;
+
+import com.github.chengtang.dlock.core.DistributedLockClient;
+import com.github.chengtang.dlock.core.LockContext;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.LockObserver;
+import com.github.chengtang.dlock.core.LockTokenGenerator;
+import com.github.chengtang.dlock.core.NodeLockTokenGenerator;
+import com.github.chengtang.dlock.core.SpinBackoff;
+import com.github.chengtang.dlock.core.SpinWaitConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * Redlock：在多数独立节点上获取且剩余有效期为正时才算成功，否则在所有节点上释放
+ */
+@Slf4j
+public class RedlockDistributedLockClient implements DistributedLockClient {
+    private static final int THREADS_PER_NODE = 32;
+    private static final int QUEUE_PER_NODE = 64;
+    private static final long MIN_DRIFT_MILLIS = 2L;
+
+    private final List<RedlockNode> nodes;
+    private final int quorum;
+    private final long nodeTimeoutNanos;
+    private final double clockDriftFactor;
+    private final LockObserver observer;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Hold> holds = new ConcurrentHashMap<>();
+    private LockTokenGenerator tokens = new NodeLockTokenGenerator();
+
+    public RedlockDistributedLockClient(List<? extends RedlockNode> nodes) {
+        this(nodes, 100, TimeUnit.MILLISECONDS, 0.01, LockObserver.NOOP);
+    }
+
+    public RedlockDistributedLockClient(List<? extends RedlockNode> nodes, long nodeTimeout, TimeUnit unit,
+                                        double clockDriftFactor, LockObserver observer) {
+        if (nodes == null || nodes.isEmpty()) {
+            throw new IllegalArgumentException("redlock requires at least one node");
+        }
+        if (nodes.size() < 3 && log.isWarnEnabled()) {
+            log.warn("redlock with {} node(s) tolerates no node failure, use an odd number >= 3", nodes.size());
+        }
+        this.nodes = new ArrayList<>(nodes);
+        this.quorum = nodes.size() / 2 + 1;
+        this.nodeTimeoutNanos = unit.toNanos(nodeTimeout);
+        this.clockDriftFactor = clockDriftFactor;
+        this.observer = Objects.requireNonNull(observer, "observer");
+        AtomicInteger seq = new AtomicInteger();
+        int threads = nodes.size() * THREADS_PER_NODE;
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(nodes.size() * QUEUE_PER_NODE), r -> {
+            Thread t = new Thread(r, "dlock-redlock-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    public int quorum() {
+        return quorum;
+    }
+
+    public void loadScripts() {
+        for (RedlockNode node : nodes) {
+            try {
+                node.loadScripts();
+            } catch (RuntimeException e) {
+                log.warn("preload redlock scripts failed, fall back to load on first use msg={}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 失败的尝试在各节点上异步释放，为免该释放删除下一次尝试写入的 key，每次尝试使用新令牌
+     */
+    public void setTokenGenerator(LockTokenGenerator tokens) {
+        this.tokens = Objects.requireNonNull(tokens, "tokens");
+    }
+
+    @Override
+    public LockHandle tryLock(String key, long leaseTime, TimeUnit unit) {
+        LockHandle handle = acquire(key, leaseTime, unit);
+        observer.onAttempts(LockContext.name(), key, 1, handle != null);
+        return handle;
+    }
+
+    @Override
+    public LockHandle tryLock(String key, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin) {
+        long deadline = System.nanoTime() + unit.toNanos(waitTime);
+        SpinBackoff backoff = spin == null ? null : new SpinBackoff(spin);
+        int attempts = 0;
+        LockHandle handle = null;
+        while (System.nanoTime() <= deadline) {
+            attempts++;
+            handle = acquire(key, leaseTime, unit);
+            if (handle != null || backoff == null || (spin.maxAttempts() > 0 && attempts >= spin.maxAttempts())) {
+                break;
+            }
+            long sleepNanos = Math.min(backoff.next(0L), deadline - System.nanoTime());
+            if (sleepNanos > 0) {
+                LockSupport.parkNanos(this, sleepNanos);
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        observer.onAttempts(LockContext.name(), key, attempts, handle != null);
+        return handle;
+    }
+
+    @Nullable
+    private LockHandle acquire(String key, long leaseTime, TimeUnit unit) {
+        Hold held = holds.get(key);
+        if (held != null && held.owner == Thread.currentThread() && held.reenter()) {
+            if (log.isDebugEnabled()) {
+                log.debug("lock reentered key={}", key);
+            }
+            return held.handle;
+        }
+        if (leaseTime < 0) {
+            throw new IllegalArgumentException("leaseTime < 0 is not supported by redlock, key=" + key);
+        }
+        long leaseMillis = unit.toMillis(leaseTime);
+        String token = tokens.next();
+        long start = System.nanoTime();
+        BlockingQueue<Boolean> replies = new LinkedBlockingQueue<>();
+        List<CompletableFuture<Boolean>> attempts = new ArrayList<>(nodes.size());
+        for (RedlockNode node : nodes) {
+            CompletableFuture<Boolean> attempt = submit(key, () -> node.tryAcquire(key, token, leaseMillis));
+            attempt.whenComplete((ok, e) -> {
+                if (e != null && log.isDebugEnabled()) {
+                    log.debug("redlock node acquire failed key={}, msg={}", key, e.getMessage());
+                }
+                replies.offer(Boolean.TRUE.equals(ok));
+            });
+            attempts.add(attempt);
+        }
+        int acquired = 0;
+        int failed = 0;
+        long deadline = start + nodeTimeoutNanos;
+        try {
+            while (acquired < quorum && failed <= nodes.size() - quorum) {
+                long remaining = deadline - System.nanoTime();
+                Boolean reply = remaining > 0 ? replies.poll(remaining, TimeUnit.NANOSECONDS) : replies.poll();
+                if (reply == null) {
+                    break;
+                }
+                if (reply) {
+                    acquired++;
+                } else {
+                    failed++;
+                }
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            releaseAll(key, token, attempts, false);
+            return null;
+        }
+        long now = System.nanoTime();
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(now - start);
+        long validity = leaseMillis - elapsedMillis - ((long) (leaseMillis * clockDriftFactor) + MIN_DRIFT_MILLIS);
+        if (acquired < quorum || validity <= 0) {
+            // 未达多数或有效期已耗尽：少数节点上已写入的 key 立即释放，不等租约过期
+            releaseAll(key, token, attempts, false);
+            if (log.isDebugEnabled()) {
+                log.debug("redlock busy key={}, acquired={}/{}, validity={}ms", key, acquired, nodes.size(), validity);
+            }
+            return null;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("redlock acquired key={}, acquired={}/{}, validity={}ms", key, acquired, nodes.size(), validity);
+        }
+        LockHandle handle = LockHandle.bounded(key, token, now + TimeUnit.MILLISECONDS.toNanos(validity));
+        holds.put(key, new Hold(Thread.currentThread(), handle, attempts));
+        return handle;
+    }
+
+    /**
+     * 交给节点线程池执行；线程与队列均满时不在调用线程上执行，返回以拒绝异常结束的 future，由调用方按该节点失败计
+     */
+    private CompletableFuture<Boolean> submit(String key, Supplier<Boolean> call) {
+        try {
+            return CompletableFuture.supplyAsync(call, executor);
+        } catch (RejectedExecutionException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("redlock executor saturated, node call rejected key={}", key);
+            }
+            CompletableFuture<Boolean> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    @Override
+    public void unlock(LockHandle handle) {
+        String key = handle.key();
+        Hold hold = holds.get(key);
+        List<CompletableFuture<Boolean>> attempts = null;
+        if (hold != null && hold.handle == handle) {
+            int remaining = hold.exit();
+            if (remaining > 0) {
+                if (log.isDebugEnabled()) {
+                    log.debug("reentrant unlock key={}, holds={}", key, remaining);
+                }
+                return;
+            }
+            holds.remove(key, hold);
+            attempts = hold.attempts;
+        }
+        releaseAll(key, handle.token(), attempts, true);
+    }
+
+    /**
+     * 异步向所有节点发送释放；每个节点的释放排在该节点的加锁应答之后，避免在途的加锁晚于释放写入
+     */
+    private void releaseAll(String key, String token, @Nullable List<CompletableFuture<Boolean>> attempts, boolean report) {
+        String name = LockContext.name();
+        AtomicInteger pending = new AtomicInteger(nodes.size());
+        AtomicInteger released = new AtomicInteger();
+        for (int i = 0; i < nodes.size(); i++) {
+            RedlockNode node = nodes.get(i);
+            CompletableFuture<Boolean> attempt = attempts == null ? null : attempts.get(i);
+            // 加锁失败的节点同样尝试释放，令牌不符时释放为空操作
+            CompletableFuture<?> after = attempt == null
+                    ? CompletableFuture.completedFuture(null) : attempt.handle((ok, e) -> null);
+            after.thenRun(() -> {
+                CompletableFuture<Boolean> release = submit(key, () -> node.release(key, token));
+                release.whenComplete((ok, e) -> {
+                    if (Boolean.TRUE.equals(ok)) {
+                        released.incrementAndGet();
+                    } else if (e != null && log.isDebugEnabled()) {
+                        log.debug("redlock node release failed key={}, msg={}", key, e.getMessage());
+                    }
+                    if (pending.decrementAndGet() == 0 && report) {
+                        if (released.get() < quorum) {
+                            observer.onReleaseMissed(name, key);
+                            if (log.isDebugEnabled()) {
+                                log.debug("unlock missed on majority key={}, released={}/{}", key, released.get(), nodes.size());
+                            }
+                        } else if (log.isDebugEnabled()) {
+                            log.debug("unlock executed for key={}, released={}/{}", key, released.get(), nodes.size());
+                        }
+                    }
+                });
+            });
+        }
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+        for (RedlockNode node : nodes) {
+            try {
+                node.close();
+            } catch (RuntimeException e) {
+                log.warn("close redlock node failed msg={}", e.getMessage());
+            }
+        }
+    }
+
+    private static final class Hold {
+        private final Thread owner;
+        private final LockHandle handle;
+        private final List<CompletableFuture<Boolean>> attempts;
+        private int count = 1;
+
+        private Hold(Thread owner, LockHandle handle, List<CompletableFuture<Boolean>> attempts) {
+            this.owner = owner;
+            this.handle = handle;
+            this.attempts = attempts;
+        }
+
+        synchronized boolean reenter() {
+            if (count == 0) {
+                return false;
+            }
+            count++;
+            return true;
+        }
+
+        synchronized int exit() {
+            return --count;
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.github.chengtang.dlock.redis;
+
+/**
+ * Redlock 的一个独立节点
+ */
+public interface RedlockNode {
+    boolean tryAcquire(String key, String token, long leaseMillis);
+
+    boolean release(String key, String token);
+
+    default void loadScripts() {
+    }
+
+    default void close() {
+    }
+}
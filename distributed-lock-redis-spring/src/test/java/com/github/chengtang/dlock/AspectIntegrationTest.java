@@ -2,14 +2,26 @@ package com.github.chengtang.dlock;
 
 import com.github.chengtang.dlock.aop.DistributedLockAspect;
 import com.github.chengtang.dlock.annotation.Lock;
+import com.github.chengtang.dlock.annotation.LockMode;
+import com.github.chengtang.dlock.core.LockContext;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.SpinWaitConfig;
 import com.github.chengtang.lockkey.LockKeyParam;
 import org.junit.jupiter.api.Test;
 import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class AspectIntegrationTest {
     static class Service {
@@ -18,6 +30,36 @@ class AspectIntegrationTest {
         public int doWork(@LockKeyParam Long id) {
             return calls.incrementAndGet();
         }
+
+        @Lock(prefix = "dl", delimiter = ":", expireTime = 1, waitTime = 0, timeUnit = TimeUnit.SECONDS)
+        public int doBatch(@LockKeyParam List<Long> ids) {
+            return calls.incrementAndGet();
+        }
+
+        @Lock(prefix = "dl", delimiter = ":", expireTime = 1, waitTime = 0, timeUnit = TimeUnit.SECONDS, mode = LockMode.READ)
+        public int doRead(@LockKeyParam Long id) {
+            return calls.incrementAndGet();
+        }
+
+        @Lock(prefix = "dl", delimiter = ":", expireTime = 1, waitTime = 0, timeUnit = TimeUnit.SECONDS, permits = 2)
+        public int callPartner(@LockKeyParam Long id) {
+            return calls.incrementAndGet();
+        }
+
+        @Lock(prefix = "dl", delimiter = ":", expireTime = 1, waitTime = 0, timeUnit = TimeUnit.SECONDS)
+        public LockHandle currentHandle(@LockKeyParam Long id) {
+            return LockContext.current();
+        }
+
+        @Lock(prefix = "dl", delimiter = ":", expireTime = 1, waitTime = 0, timeUnit = TimeUnit.SECONDS, permits = 2)
+        public int callPartners(@LockKeyParam List<Long> ids) {
+            return calls.incrementAndGet();
+        }
+
+        @Lock(prefix = "dl", delimiter = ":", expireTime = 1, waitTime = 0, timeUnit = TimeUnit.SECONDS)
+        public CompletableFuture<Integer> doAsync(@LockKeyParam Long id, CompletableFuture<Integer> work) {
+            return work;
+        }
     }
 
     @Test
@@ -32,5 +74,113 @@ class AspectIntegrationTest {
         assertEquals(2, r2);
         assertEquals(1, r1);
     }
-}
 
+    @Test
+    void futureHoldsLockUntilCompletionWithoutReactiveClient() {
+        DistributedLockAspect aspect = new DistributedLockAspect(new FakeDistributedLockClient());
+        AspectJProxyFactory pf = new AspectJProxyFactory(new Service());
+        pf.addAspect(aspect);
+        Service proxy = pf.getProxy();
+        CompletableFuture<Integer> work = new CompletableFuture<>();
+        CompletableFuture<Integer> result = proxy.doAsync(1L, work);
+        assertFalse(result.isDone());
+        assertThrows(IllegalStateException.class, () -> proxy.doAsync(1L, CompletableFuture.completedFuture(0)));
+        work.complete(7);
+        assertEquals(7, result.join());
+        assertEquals(0, proxy.doAsync(1L, CompletableFuture.completedFuture(0)).join());
+    }
+
+    @Test
+    void batchLocksEveryKeyAllOrNothing() {
+        FakeDistributedLockClient client = new FakeDistributedLockClient();
+        AspectJProxyFactory pf = new AspectJProxyFactory(new Service());
+        pf.addAspect(new DistributedLockAspect(client));
+        Service proxy = pf.getProxy();
+        assertEquals(1, proxy.doBatch(Arrays.asList(2L, 1L)));
+        LockHandle held = client.tryLock("dl:2", 1, TimeUnit.SECONDS);
+        assertThrows(IllegalStateException.class, () -> proxy.doBatch(Arrays.asList(1L, 2L, 3L)));
+        assertNotNull(client.tryLock("dl:1", 1, TimeUnit.SECONDS), "partially acquired keys are rolled back");
+        client.unlock(held);
+    }
+
+    @Test
+    void emptyBatchProceedsWithoutLock() {
+        FakeDistributedLockClient client = new FakeDistributedLockClient();
+        AspectJProxyFactory pf = new AspectJProxyFactory(new Service());
+        pf.addAspect(new DistributedLockAspect(client));
+        Service proxy = pf.getProxy();
+        LockHandle global = client.tryLock("dl", 1, TimeUnit.SECONDS);
+        assertEquals(1, proxy.doBatch(Collections.emptyList()));
+        assertEquals(1, client.attempts.get());
+        client.unlock(global);
+    }
+
+    @Test
+    void readModeUsesSharedLock() {
+        AtomicInteger reads = new AtomicInteger();
+        FakeDistributedLockClient client = new FakeDistributedLockClient() {
+            @Override
+            public LockHandle tryReadLock(String key, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin) {
+                reads.incrementAndGet();
+                return new LockHandle(key, "reader", true);
+            }
+        };
+        AspectJProxyFactory pf = new AspectJProxyFactory(new Service());
+        pf.addAspect(new DistributedLockAspect(client));
+        Service proxy = pf.getProxy();
+        LockHandle writer = client.tryLock("dl:1", 1, TimeUnit.SECONDS);
+        assertEquals(1, proxy.doRead(1L));
+        assertEquals(1, reads.get());
+        assertEquals(1, client.attempts.get(), "read mode must not take the exclusive lock");
+        client.unlock(writer);
+    }
+
+    @Test
+    void readModeFallsBackToExclusiveByDefault() {
+        FakeDistributedLockClient client = new FakeDistributedLockClient();
+        AspectJProxyFactory pf = new AspectJProxyFactory(new Service());
+        pf.addAspect(new DistributedLockAspect(client));
+        Service proxy = pf.getProxy();
+        LockHandle writer = client.tryLock("dl:1", 1, TimeUnit.SECONDS);
+        assertThrows(IllegalStateException.class, () -> proxy.doRead(1L));
+        client.unlock(writer);
+        assertEquals(1, proxy.doRead(1L));
+    }
+
+    @Test
+    void permitsUseSemaphore() {
+        AtomicInteger permits = new AtomicInteger();
+        FakeDistributedLockClient client = new FakeDistributedLockClient() {
+            @Override
+            public LockHandle tryAcquirePermit(String key, int n, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin) {
+                permits.set(n);
+                return LockHandle.permit(key, "holder", n);
+            }
+        };
+        AspectJProxyFactory pf = new AspectJProxyFactory(new Service());
+        pf.addAspect(new DistributedLockAspect(client));
+        Service proxy = pf.getProxy();
+        assertEquals(1, proxy.callPartner(1L));
+        assertEquals(2, permits.get());
+        assertEquals(0, client.attempts.get());
+        assertThrows(IllegalStateException.class, () -> proxy.callPartners(Arrays.asList(1L, 2L)));
+    }
+
+    @Test
+    void lockContextBoundOnlyDuringInvocation() {
+        AspectJProxyFactory pf = new AspectJProxyFactory(new Service());
+        pf.addAspect(new DistributedLockAspect(new FakeDistributedLockClient()));
+        Service proxy = pf.getProxy();
+        LockHandle outer = new LockHandle("outer", "t");
+        LockHandle previous = LockContext.bind(outer);
+        try {
+            LockHandle inside = proxy.currentHandle(5L);
+            assertEquals("dl:5", inside.key());
+            assertEquals(outer, LockContext.current());
+        } finally {
+            LockContext.restore(previous);
+        }
+        assertNull(LockContext.current());
+        assertThrows(IllegalStateException.class, LockContext::fence);
+    }
+}
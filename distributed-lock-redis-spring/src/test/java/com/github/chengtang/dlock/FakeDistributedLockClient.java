@@ -1,35 +1,45 @@
 package com.github.chengtang.dlock;
 
 import com.github.chengtang.dlock.core.DistributedLockClient;
+import com.github.chengtang.dlock.core.LockHandle;
 import com.github.chengtang.dlock.core.SpinWaitConfig;
 
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class FakeDistributedLockClient implements DistributedLockClient {
-    private final Map<String, Long> locks = new ConcurrentHashMap<>();
+    private final Map<String, String> locks = new ConcurrentHashMap<>();
+    final AtomicInteger attempts = new AtomicInteger();
+    final AtomicInteger failures = new AtomicInteger();
 
     @Override
-    public boolean tryLock(String key, long leaseTime, TimeUnit unit) {
-        long now = System.currentTimeMillis();
-        long exp = now + unit.toMillis(leaseTime);
-        return locks.putIfAbsent(key, exp) == null;
+    public LockHandle tryLock(String key, long leaseTime, TimeUnit unit) {
+        String token = UUID.randomUUID().toString();
+        attempts.incrementAndGet();
+        if (locks.putIfAbsent(key, token) != null) {
+            failures.incrementAndGet();
+            return null;
+        }
+        return new LockHandle(key, token);
     }
 
     @Override
-    public boolean tryLock(String key, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin) {
+    public LockHandle tryLock(String key, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin) {
         long deadline = System.nanoTime() + TimeUnit.NANOSECONDS.convert(waitTime, unit);
         while (System.nanoTime() <= deadline) {
-            if (tryLock(key, leaseTime, unit)) return true;
+            LockHandle handle = tryLock(key, leaseTime, unit);
+            if (handle != null) return handle;
             try { Thread.sleep(1); } catch (InterruptedException ignored) { }
         }
-        return false;
+        return null;
     }
 
     @Override
-    public void unlock(String key) {
-        locks.remove(key);
+    public void unlock(LockHandle handle) {
+        locks.remove(handle.key(), handle.token());
     }
 }
 
@@ -0,0 +1,153 @@
+package com.github.chengtang.dlock;
+
+import com.github.chengtang.dlock.core.CompositeLockObserver;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.LockObserver;
+import com.github.chengtang.dlock.core.PreLockingDistributedLockClient;
+import com.github.chengtang.dlock.metrics.HotKey;
+import com.github.chengtang.dlock.metrics.HotKeyProfiler;
+import org.junit.jupiter.api.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotKeyProfilerTest {
+
+    @Test
+    void hotKeysSurviveManyColdKeys() {
+        HotKeyProfiler profiler = new HotKeyProfiler(32, 3, 1, TimeUnit.HOURS);
+        for (int i = 0; i < 20_000; i++) {
+            profiler.onAttempts("Svc#m", "cold:" + i, 2, true);
+            if (i % 10 == 0) {
+                profiler.onAttempts("Svc#m", "hot:a", 3, true);
+            }
+            if (i % 20 == 0) {
+                profiler.onAttempts("Svc#m", "hot:b", 1, false);
+            }
+            // 未竞争的加锁不计入
+            profiler.onAttempts("Svc#m", "calm", 1, true);
+        }
+        List<HotKey> top = profiler.getTopKeys();
+        assertEquals(3, top.size());
+        assertEquals("hot:a", top.get(0).getKey());
+        assertEquals("hot:b", top.get(1).getKey());
+        assertTrue(top.get(0).getContended() - top.get(0).getError() <= 2000);
+        assertTrue(top.get(0).getContended() >= 2000);
+        assertTrue(profiler.topKeys(100).stream().noneMatch(k -> k.getKey().equals("calm")));
+        assertTrue(profiler.topKeys(100).size() <= 32);
+    }
+
+    @Test
+    void waitTimeFollowsContendedAcquire() {
+        HotKeyProfiler profiler = new HotKeyProfiler(8, 8, 1, TimeUnit.HOURS);
+        profiler.onAttempts("Svc#m", "k", 4, true);
+        profiler.onAcquire("Svc#m", "k", true, TimeUnit.MILLISECONDS.toNanos(30));
+        // 未竞争的加锁不累计等待时长
+        profiler.onAttempts("Svc#m", "k", 1, true);
+        profiler.onAcquire("Svc#m", "k", true, TimeUnit.MILLISECONDS.toNanos(500));
+        HotKey k = profiler.getTopKeys().get(0);
+        assertEquals(1, k.getContended());
+        assertEquals(30, k.getWaitMillis());
+    }
+
+    @Test
+    void staleContendedKeyClearedByUncontendedAttempt() {
+        HotKeyProfiler profiler = new HotKeyProfiler(8, 8, 1, TimeUnit.HOURS);
+        // 未经切面直接调用客户端：竞争的尝试之后没有 onAcquire
+        profiler.onAttempts("Svc#m", "k", 3, false);
+        profiler.onAttempts("Svc#m", "k", 1, true);
+        profiler.onAcquire("Svc#m", "k", true, TimeUnit.MILLISECONDS.toNanos(500));
+        assertEquals(0, profiler.getTopKeys().get(0).getWaitMillis());
+    }
+
+    @Test
+    void multiKeyWaitAttributedToKeySet() {
+        HotKeyProfiler profiler = new HotKeyProfiler(8, 8, 1, TimeUnit.HOURS);
+        String multiKey = LockObserver.multiKey(Arrays.asList("b", "a", "b"));
+        assertEquals("[a, b]", multiKey);
+        profiler.onAttempts("Svc#m", multiKey, 2, true);
+        profiler.onAcquire("Svc#m", multiKey, true, TimeUnit.MILLISECONDS.toNanos(40));
+        HotKey k = profiler.getTopKeys().get(0);
+        assertEquals("[a, b]", k.getKey());
+        assertEquals(40, k.getWaitMillis());
+    }
+
+    @Test
+    void localPreLockTimeoutReported() throws Exception {
+        HotKeyProfiler profiler = new HotKeyProfiler(8, 8, 1, TimeUnit.HOURS);
+        FakeDistributedLockClient fake = new FakeDistributedLockClient();
+        PreLockingDistributedLockClient client = new PreLockingDistributedLockClient(fake, profiler);
+        LockHandle held = client.tryLock("dl:1", 10, TimeUnit.SECONDS);
+        Thread other = new Thread(() -> {
+            client.tryLock("dl:1", 10, TimeUnit.SECONDS);
+            client.tryLock("dl:1", 20, 10_000, TimeUnit.MILLISECONDS, null);
+        });
+        other.start();
+        other.join();
+        client.unlock(held);
+        // 两次本地失败都未到达被装饰的客户端
+        assertEquals(1, fake.attempts.get());
+        HotKey k = profiler.getTopKeys().get(0);
+        assertEquals("dl:1", k.getKey());
+        assertEquals(2, k.getContended());
+    }
+
+    @Test
+    void countsDecayByHalfLife() throws Exception {
+        HotKeyProfiler profiler = new HotKeyProfiler(8, 8, 50, TimeUnit.MILLISECONDS);
+        for (int i = 0; i < 64; i++) {
+            profiler.onAttempts("Svc#m", "k", 2, true);
+        }
+        assertEquals(64, profiler.getTopKeys().get(0).getContended());
+        Thread.sleep(120);
+        assertTrue(profiler.getTopKeys().get(0).getContended() <= 16);
+        profiler.reset();
+        assertTrue(profiler.getTopKeys().isEmpty());
+    }
+
+    @Test
+    void exposedAsMXBean() throws Exception {
+        HotKeyProfiler profiler = new HotKeyProfiler(8, 8, 1, TimeUnit.HOURS);
+        profiler.onAttempts("Svc#m", "order:1", 2, true);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(HotKeyProfiler.OBJECT_NAME + ",test=" + System.nanoTime());
+        server.registerMBean(profiler, name);
+        try {
+            CompositeData[] top = (CompositeData[]) server.getAttribute(name, "TopKeys");
+            assertEquals(1, top.length);
+            assertEquals("order:1", top[0].get("key"));
+            assertEquals(1L, top[0].get("contended"));
+        } finally {
+            server.unregisterMBean(name);
+        }
+    }
+
+    @Test
+    void compositeForwardsToAll() {
+        AtomicInteger calls = new AtomicInteger();
+        LockObserver counting = new LockObserver() {
+            @Override
+            public void onReleaseMissed(String name, String key) {
+                calls.incrementAndGet();
+            }
+        };
+        HotKeyProfiler profiler = new HotKeyProfiler(8, 8, 1, TimeUnit.HOURS);
+        assertSame(LockObserver.NOOP, CompositeLockObserver.of(Arrays.asList(LockObserver.NOOP)));
+        assertSame(profiler, CompositeLockObserver.of(Arrays.asList(LockObserver.NOOP, profiler)));
+        LockObserver composite = CompositeLockObserver.of(Arrays.asList(counting, profiler));
+        composite.onReleaseMissed("Svc#m", "k");
+        composite.onAttempts("Svc#m", "k", 2, true);
+        assertEquals(1, calls.get());
+        assertEquals(1, profiler.getTopKeys().size());
+    }
+}
@@ -1,11 +1,18 @@
 package com.github.chengtang.dlock;
 
+import com.github.chengtang.dlock.annotation.KeyEncoding;
 import com.github.chengtang.dlock.annotation.Lock;
 import com.github.chengtang.dlock.core.KeyResolver;
 import com.github.chengtang.lockkey.LockKeyParam;
 import org.junit.jupiter.api.Test;
+import org.springframework.expression.spel.SpelCompilerMode;
 
 import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -18,6 +25,12 @@ class KeyResolverTest {
         public User(Long id, String name) { this.id = id; this.name = name; }
     }
 
+    static class VipUser extends User {
+        @LockKeyParam
+        String level;
+        public VipUser(Long id, String name, String level) { super(id, name); this.level = level; }
+    }
+
     static class PlainUser {
         Long id;
         String name;
@@ -38,6 +51,31 @@ class KeyResolverTest {
 
         @Lock(prefix = "dl", delimiter = ":", timeUnit = TimeUnit.SECONDS)
         public void onlyField(User user, @LockKeyParam Long orderId) {}
+
+        @Lock(prefix = "dl", delimiter = ":", timeUnit = TimeUnit.SECONDS, keys = {"#p0.level"})
+        public void inheritedField(VipUser user, @LockKeyParam Long orderId) {}
+
+        @Lock(prefix = "dl", delimiter = ":", timeUnit = TimeUnit.SECONDS, keys = {"#p0.id", "#p1"},
+                spelCompilerMode = SpelCompilerMode.IMMEDIATE)
+        public void compiled(PlainUser user, Long orderId) {}
+
+        @Lock(prefix = "order", delimiter = ":", timeUnit = TimeUnit.SECONDS)
+        public void batch(@LockKeyParam List<Long> orderIds) {}
+
+        @Lock(prefix = "dl", delimiter = ":", timeUnit = TimeUnit.SECONDS, keys = {"#p0.name"}, keyEncoding = KeyEncoding.HASHED)
+        public void hashed(@LockKeyParam("id") PlainUser user) {}
+
+        @Lock(prefix = "order", delimiter = ":", timeUnit = TimeUnit.SECONDS, keyEncoding = KeyEncoding.HASHED)
+        public void hashedBatch(@LockKeyParam List<Long> orderIds) {}
+
+        @Lock(prefix = "order", delimiter = ":", timeUnit = TimeUnit.SECONDS, keys = {"#tenant"})
+        public void batchUsers(@LockKeyParam("id") User[] users, @LockKeyParam Set<String> regions, String tenant) {}
+
+        @Lock(prefix = "code", delimiter = ":", timeUnit = TimeUnit.SECONDS)
+        public void batchCodes(@LockKeyParam List<String> codes, @LockKeyParam String suffix) {}
+
+        @Lock(prefix = "code", delimiter = ":", timeUnit = TimeUnit.SECONDS)
+        public void singleCode(@LockKeyParam String code, @LockKeyParam String suffix) {}
     }
 
     @Test
@@ -71,4 +109,96 @@ class KeyResolverTest {
         String key = KeyResolver.buildKey(lockAnn, m, new Object[]{new User(1L, "Alice"), 9L});
         assertEquals("dl:1:9", key);
     }
+
+    @Test
+    void cachedPlanEvaluatesPerCallArguments() throws Exception {
+        Method m = Service.class.getDeclaredMethod("unionBoth", User.class, Long.class);
+        Lock lockAnn = m.getAnnotation(Lock.class);
+        assertEquals("dl:1:9:1:9", KeyResolver.buildKey(lockAnn, m, new Object[]{new User(1L, "Alice"), 9L}));
+        assertEquals("dl:2:7:2:7", KeyResolver.buildKey(lockAnn, m, new Object[]{new User(2L, "Bob"), 7L}));
+        assertEquals("dl", KeyResolver.buildKey(lockAnn, m, new Object[]{null, null}));
+    }
+
+    @Test
+    void compiledModeMatchesInterpreter() throws Exception {
+        Method m = Service.class.getDeclaredMethod("compiled", PlainUser.class, Long.class);
+        Lock lockAnn = m.getAnnotation(Lock.class);
+        for (int i = 0; i < 5; i++) {
+            assertEquals("dl:1:9", KeyResolver.buildKey(lockAnn, m, new Object[]{new PlainUser(1L, "Alice"), 9L}));
+        }
+        assertEquals("dl:9", KeyResolver.buildKey(lockAnn, m, new Object[]{null, 9L}));
+    }
+
+    @Test
+    void buildKeyWithInheritedFields() throws Exception {
+        Method m = Service.class.getDeclaredMethod("inheritedField", VipUser.class, Long.class);
+        Lock lockAnn = m.getAnnotation(Lock.class);
+        String key = KeyResolver.buildKey(lockAnn, m, new Object[]{new VipUser(1L, "Alice", "gold"), 9L});
+        assertEquals("dl:1:gold:9:gold", key);
+    }
+
+    @Test
+    void buildKeysExpandsCollectionSortedAndDistinct() throws Exception {
+        Method m = Service.class.getDeclaredMethod("batch", List.class);
+        Lock lockAnn = m.getAnnotation(Lock.class);
+        List<String> keys = KeyResolver.buildKeys(lockAnn, m, new Object[]{Arrays.asList(3L, 1L, 2L, 3L)});
+        assertEquals(Arrays.asList("order:1", "order:2", "order:3"), keys);
+    }
+
+    @Test
+    void buildKeysEmptyCollectionYieldsNoKeys() throws Exception {
+        Method m = Service.class.getDeclaredMethod("batch", List.class);
+        Lock lockAnn = m.getAnnotation(Lock.class);
+        assertEquals(Collections.emptyList(), KeyResolver.buildKeys(lockAnn, m, new Object[]{Collections.emptyList()}));
+        assertEquals(Collections.emptyList(), KeyResolver.buildKeys(lockAnn, m, new Object[]{null}));
+        assertEquals(Collections.emptyList(), KeyResolver.buildKeys(lockAnn, m, new Object[]{Collections.singletonList(null)}));
+    }
+
+    @Test
+    void buildKeysKeepsEmptyPartsLikeBuildKey() throws Exception {
+        Method batch = Service.class.getDeclaredMethod("batchCodes", List.class, String.class);
+        Method single = Service.class.getDeclaredMethod("singleCode", String.class, String.class);
+        Lock batchAnn = batch.getAnnotation(Lock.class);
+        Lock singleAnn = single.getAnnotation(Lock.class);
+        List<String> keys = KeyResolver.buildKeys(batchAnn, batch, new Object[]{Arrays.asList("", "a"), ""});
+        assertEquals(Arrays.asList(KeyResolver.buildKey(singleAnn, single, new Object[]{"", ""}),
+                KeyResolver.buildKey(singleAnn, single, new Object[]{"a", ""})), keys);
+        assertEquals(Arrays.asList("code::", "code:a:"), keys);
+    }
+
+    @Test
+    void buildKeysCrossProductOfArrayAndCollection() throws Exception {
+        Method m = Service.class.getDeclaredMethod("batchUsers", User[].class, Set.class, String.class);
+        Lock lockAnn = m.getAnnotation(Lock.class);
+        User[] users = {new User(2L, "Bob"), new User(1L, "Alice")};
+        Set<String> regions = new LinkedHashSet<>(Arrays.asList("sh", "bj"));
+        List<String> keys = KeyResolver.buildKeys(lockAnn, m, new Object[]{users, regions, "t1"});
+        assertEquals(Arrays.asList("order:1:bj:t1", "order:1:sh:t1", "order:2:bj:t1", "order:2:sh:t1"), keys);
+    }
+
+    @Test
+    void buildKeysWithoutCollectionMatchesBuildKey() throws Exception {
+        Method m = Service.class.getDeclaredMethod("unionBoth", User.class, Long.class);
+        Lock lockAnn = m.getAnnotation(Lock.class);
+        Object[] args = {new User(1L, "Alice"), 9L};
+        assertEquals(Collections.singletonList(KeyResolver.buildKey(lockAnn, m, args)), KeyResolver.buildKeys(lockAnn, m, args));
+    }
+
+    @Test
+    void hashedKeyKeepsPrefixAndHashesParts() throws Exception {
+        Method m = Service.class.getDeclaredMethod("hashed", PlainUser.class);
+        Lock lockAnn = m.getAnnotation(Lock.class);
+        String key = KeyResolver.buildKey(lockAnn, m, new Object[]{new PlainUser(42L, "Alice Wonderland from a very long street name")});
+        // MurmurHash3_x64_128 of UTF-16LE "42:Alice Wonderland from a very long street name"
+        assertEquals("dl:Yp0cy7mBHhPxPNO6_PPSMC", key);
+        assertEquals(key, KeyResolver.buildKey(lockAnn, m, new Object[]{new PlainUser(42L, "Alice Wonderland from a very long street name")}));
+    }
+
+    @Test
+    void hashedBatchMatchesSingleKeyEncoding() throws Exception {
+        Method m = Service.class.getDeclaredMethod("hashedBatch", List.class);
+        Lock lockAnn = m.getAnnotation(Lock.class);
+        List<String> keys = KeyResolver.buildKeys(lockAnn, m, new Object[]{Arrays.asList(2L, 1L, 9L)});
+        assertEquals(Arrays.asList("order:KxH-nAo5vQFJql-R1DU12I", "order:WrNcLDCX75DB2tdmHI6H5I", "order:sPpYa06DfbIRs3gVyx2qUB"), keys);
+    }
 }
@@ -0,0 +1,91 @@
+package com.github.chengtang.dlock;
+
+import com.github.chengtang.dlock.annotation.Lock;
+import com.github.chengtang.dlock.annotation.LockMode;
+import com.github.chengtang.dlock.aop.LockMethodScanner;
+import com.github.chengtang.lockkey.LockKeyParam;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.lang.reflect.Method;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LockMethodScannerTest {
+    static class Service {
+        @Lock(prefix = "order", keys = {"#order.id"})
+        public void valid(Order order) {
+        }
+
+        @Lock(prefix = "order", keys = {"#ordr.id"})
+        public void unknownVariable(Order order) {
+        }
+
+        @Lock(prefix = "order", keys = {"#order.id +"})
+        public void unparsable(Order order) {
+        }
+
+        @Lock(prefix = "order", singleFlight = true, mode = LockMode.READ)
+        public void singleFlightRead(@LockKeyParam Long id) {
+        }
+
+        @Lock
+        public void noKey(Long id) {
+        }
+    }
+
+    static class NightlyJob {
+        @Lock(prefix = "job:nightly")
+        public void run() {
+        }
+    }
+
+    static class Order {
+        public Long id;
+    }
+
+    private static List<String> problems(String name) throws Exception {
+        Method method = Service.class.getMethod(name, name.equals("singleFlightRead") || name.equals("noKey")
+                ? Long.class : Order.class);
+        return LockMethodScanner.validate(method.getAnnotation(Lock.class), method);
+    }
+
+    @Test
+    void reportsMisconfiguredMethods() throws Exception {
+        assertEquals(0, problems("valid").size());
+        assertTrue(problems("unknownVariable").get(0).contains("#ordr"));
+        assertTrue(problems("unparsable").get(0).contains("unparsable"));
+        assertTrue(problems("singleFlightRead").get(0).contains("singleFlight"));
+        assertEquals(0, problems("noKey").size());
+    }
+
+    @Test
+    void failModeStopsStartup() {
+        GenericApplicationContext ctx = new GenericApplicationContext();
+        ctx.registerBean(Service.class);
+        ctx.registerBean(LockMethodScanner.class, () -> new LockMethodScanner(ctx.getBeanFactory(), LockMethodScanner.Validation.FAIL));
+        IllegalStateException e = assertThrows(IllegalStateException.class, ctx::refresh);
+        assertTrue(e.getMessage().contains("unknownVariable"));
+    }
+
+    @Test
+    void failModeAcceptsPrefixOnlyLock() {
+        GenericApplicationContext ctx = new GenericApplicationContext();
+        ctx.registerBean(NightlyJob.class);
+        ctx.registerBean(LockMethodScanner.class, () -> new LockMethodScanner(ctx.getBeanFactory(), LockMethodScanner.Validation.FAIL));
+        ctx.refresh();
+        ctx.close();
+    }
+
+    @Test
+    void warnModeStarts() {
+        GenericApplicationContext ctx = new GenericApplicationContext();
+        ctx.registerBean(Service.class);
+        ctx.registerBean(LockMethodScanner.class, () -> new LockMethodScanner(ctx.getBeanFactory(), LockMethodScanner.Validation.WARN));
+        ctx.refresh();
+        ctx.close();
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.chengtang.dlock;
+
+import com.github.chengtang.dlock.annotation.Lock;
+import com.github.chengtang.dlock.aop.DistributedLockAspect;
+import com.github.chengtang.dlock.core.LockContext;
+import com.github.chengtang.dlock.core.PreLockingDistributedLockClient;
+import com.github.chengtang.dlock.metrics.MicrometerLockObserver;
+import com.github.chengtang.lockkey.LockKeyParam;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class LockMetricsTest {
+    static class Service {
+        @Lock(prefix = "m", expireTime = 1, timeUnit = TimeUnit.SECONDS)
+        public void work(@LockKeyParam Long id) {
+        }
+
+        @Lock(prefix = "m", waitTime = 0, expireTime = 1, timeUnit = TimeUnit.SECONDS)
+        public void quick(@LockKeyParam Long id) {
+        }
+    }
+
+    @Test
+    void aspectRecordsAcquireHoldAndRelease() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        FakeDistributedLockClient client = new FakeDistributedLockClient();
+        AspectJProxyFactory pf = new AspectJProxyFactory(new Service());
+        pf.addAspect(new DistributedLockAspect(client, new MicrometerLockObserver(registry)));
+        Service proxy = pf.getProxy();
+        proxy.work(1L);
+        proxy.work(1L);
+        client.tryLock("m:1", 1, TimeUnit.SECONDS);
+        assertThrows(IllegalStateException.class, () -> proxy.work(1L));
+
+        Timer acquired = registry.find("dlock.acquire").tags("name", "Service#work", "outcome", "acquired").timer();
+        Timer timeout = registry.find("dlock.acquire").tags("name", "Service#work", "outcome", "timeout").timer();
+        Timer hold = registry.find("dlock.hold").tag("name", "Service#work").timer();
+        assertNotNull(acquired);
+        assertEquals(2, acquired.count());
+        assertEquals(1, timeout.count());
+        assertEquals(2, hold.count());
+    }
+
+    @Test
+    void attemptsAndMissedReleasesAreTaggedByName() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MicrometerLockObserver observer = new MicrometerLockObserver(registry);
+        observer.onAttempts("A#a", "k", 1, true);
+        observer.onAttempts("A#a", "k", 3, true);
+        observer.onAttempts("A#a", "k", 1, false);
+        observer.onAttempts("B#b", "k", 1, true);
+        observer.onReleaseMissed("A#a", "k");
+        DistributionSummary attempts = registry.get("dlock.attempts").tag("name", "A#a").summary();
+        assertEquals(3, attempts.count());
+        assertEquals(5.0, attempts.totalAmount());
+        assertEquals(2.0, registry.get("dlock.contended").tag("name", "A#a").counter().count());
+        assertEquals(0.0, registry.get("dlock.contended").tag("name", "B#b").counter().count());
+        assertEquals(1.0, registry.get("dlock.release.missed").tag("name", "A#a").counter().count());
+
+        CountAtBucket[] buckets = attempts.takeSnapshot().histogramCounts();
+        assertArrayEquals(new double[]{1, 2, 4, 8, 16, 32, 64},
+                Arrays.stream(buckets).mapToDouble(CountAtBucket::bucket).toArray());
+        assertEquals(2.0, buckets[0].count());
+        assertEquals(3.0, buckets[2].count());
+    }
+
+    @Test
+    void clientAttemptsCarryAspectLockName() throws Exception {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MicrometerLockObserver observer = new MicrometerLockObserver(registry);
+        PreLockingDistributedLockClient client = new PreLockingDistributedLockClient(new FakeDistributedLockClient(), observer);
+        AspectJProxyFactory pf = new AspectJProxyFactory(new Service());
+        pf.addAspect(new DistributedLockAspect(client, observer));
+        Service proxy = pf.getProxy();
+        // 其他线程在本地持有同一 key，切面内的加锁因本地预加锁失败上报竞争
+        Thread holder = new Thread(() -> client.tryLock("m:1", 10, TimeUnit.SECONDS));
+        holder.start();
+        holder.join();
+        assertThrows(IllegalStateException.class, () -> proxy.quick(1L));
+        assertEquals(1.0, registry.get("dlock.contended").tag("name", "Service#quick").counter().count());
+        assertEquals(1, registry.get("dlock.attempts").tag("name", "Service#quick").summary().count());
+        assertNull(registry.find("dlock.contended").tag("name", LockContext.UNNAMED).counter());
+    }
+}
@@ -0,0 +1,89 @@
+package com.github.chengtang.dlock;
+
+import com.github.chengtang.dlock.redis.LockReleaseNotifier;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.DefaultMessage;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LockReleaseNotifierTest {
+
+    @Test
+    void subscribesPerKeyWhileWaiting() throws Exception {
+        RecordingContainer container = new RecordingContainer();
+        LockReleaseNotifier notifier = new LockReleaseNotifier("dlock:release:", 5, TimeUnit.SECONDS);
+        notifier.setListenerContainer(container);
+        LockReleaseNotifier.Signal a1 = notifier.subscribe("dl:1");
+        LockReleaseNotifier.Signal a2 = notifier.subscribe("dl:1");
+        LockReleaseNotifier.Signal b = notifier.subscribe("dl:2");
+        assertEquals(1, container.listeners("dlock:release:dl:1").size());
+        assertEquals(1, container.listeners("dlock:release:dl:2").size());
+
+        CountDownLatch latchA = a1.latch();
+        CountDownLatch latchB = b.latch();
+        container.publish("dlock:release:dl:1");
+        assertTrue(latchA.await(1, TimeUnit.SECONDS));
+        assertFalse(latchB.await(50, TimeUnit.MILLISECONDS));
+
+        notifier.unsubscribe("dl:1", a1);
+        assertEquals(1, container.listeners("dlock:release:dl:1").size());
+        notifier.unsubscribe("dl:1", a2);
+        notifier.unsubscribe("dl:2", b);
+        assertTrue(container.listeners("dlock:release:dl:1").isEmpty());
+        assertTrue(container.listeners("dlock:release:dl:2").isEmpty());
+    }
+
+    @Test
+    void localSignalWakesParkedWaiter() throws Exception {
+        LockReleaseNotifier notifier = new LockReleaseNotifier("dlock:release:", 5, TimeUnit.SECONDS);
+        LockReleaseNotifier.Signal signal = notifier.subscribe("dl:1");
+        CountDownLatch released = signal.latch();
+        Thread t = new Thread(() -> notifier.signal("dl:1"));
+        t.start();
+        assertTrue(released.await(1, TimeUnit.SECONDS));
+        t.join();
+        notifier.unsubscribe("dl:1", signal);
+    }
+
+    /**
+     * 只记录订阅关系、不连接 Redis 的监听容器
+     */
+    private static final class RecordingContainer extends RedisMessageListenerContainer {
+        private final Map<String, List<MessageListener>> byChannel = new ConcurrentHashMap<>();
+
+        @Override
+        public void addMessageListener(MessageListener listener, Topic topic) {
+            byChannel.computeIfAbsent(topic.getTopic(), c -> Collections.synchronizedList(new ArrayList<>())).add(listener);
+        }
+
+        @Override
+        public void removeMessageListener(MessageListener listener, Topic topic) {
+            listeners(topic.getTopic()).remove(listener);
+        }
+
+        List<MessageListener> listeners(String channel) {
+            return byChannel.getOrDefault(channel, Collections.emptyList());
+        }
+
+        void publish(String channel) {
+            byte[] bytes = channel.getBytes(StandardCharsets.UTF_8);
+            for (MessageListener listener : new ArrayList<>(listeners(channel))) {
+                listener.onMessage(new DefaultMessage(bytes, "1".getBytes(StandardCharsets.UTF_8)), null);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.chengtang.dlock;
+
+import com.github.chengtang.dlock.core.NodeLockTokenGenerator;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LockTokenGeneratorTest {
+
+    @Test
+    void tokenNamesNodeAndProcessStart() {
+        String token = new NodeLockTokenGenerator("order-7f9c").next();
+        String[] parts = token.split(":");
+        assertEquals(3, parts.length, token);
+        assertEquals("order-7f9c", parts[0]);
+        assertEquals(ManagementFactory.getRuntimeMXBean().getStartTime(), Long.parseLong(parts[1], 36));
+        assertTrue(Long.parseLong(parts[2], 36) > 0);
+        assertTrue(new NodeLockTokenGenerator().next().contains(":"));
+        assertThrows(IllegalArgumentException.class, () -> new NodeLockTokenGenerator(""));
+    }
+
+    @Test
+    void generatorsInOneJvmNeverRepeat() throws Exception {
+        NodeLockTokenGenerator a = new NodeLockTokenGenerator("n");
+        NodeLockTokenGenerator b = new NodeLockTokenGenerator("n");
+        Set<String> tokens = ConcurrentHashMap.newKeySet();
+        int threads = 8;
+        int perThread = 10_000;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            NodeLockTokenGenerator generator = t % 2 == 0 ? a : b;
+            pool.execute(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    tokens.add(generator.next());
+                }
+                done.countDown();
+            });
+        }
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        pool.shutdown();
+        assertEquals(threads * perThread, tokens.size());
+    }
+}
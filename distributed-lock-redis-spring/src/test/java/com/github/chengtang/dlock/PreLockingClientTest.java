@@ -0,0 +1,117 @@
+package com.github.chengtang.dlock;
+
+import com.github.chengtang.dlock.annotation.SpinWaitStrategy;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.PreLockingDistributedLockClient;
+import com.github.chengtang.dlock.core.SpinWaitConfig;
+import com.github.chengtang.dlock.metrics.HotKey;
+import com.github.chengtang.dlock.metrics.HotKeyProfiler;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PreLockingClientTest {
+    private static final SpinWaitConfig SPIN = new SpinWaitConfig(1, 0, SpinWaitStrategy.FIXED, TimeUnit.MILLISECONDS);
+
+    @Test
+    void onlyLocalWinnerReachesDelegate() throws Exception {
+        FakeDistributedLockClient fake = new FakeDistributedLockClient();
+        PreLockingDistributedLockClient client = new PreLockingDistributedLockClient(fake);
+        int threads = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicInteger acquired = new AtomicInteger();
+        for (int i = 0; i < threads; i++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    LockHandle handle = client.tryLock("dl:1", 5, 10, TimeUnit.SECONDS, SPIN);
+                    if (handle != null) {
+                        acquired.incrementAndGet();
+                        Thread.sleep(5);
+                        client.unlock(handle);
+                    }
+                } catch (InterruptedException ignored) {
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        pool.shutdown();
+        assertEquals(threads, acquired.get());
+        assertEquals(threads, fake.attempts.get());
+        assertEquals(0, fake.failures.get());
+    }
+
+    @Test
+    void fastFailWhenHeldLocally() throws Exception {
+        FakeDistributedLockClient fake = new FakeDistributedLockClient();
+        PreLockingDistributedLockClient client = new PreLockingDistributedLockClient(fake);
+        LockHandle handle = client.tryLock("dl:1", 10, TimeUnit.SECONDS);
+        assertNotNull(handle);
+        Thread other = new Thread(() -> assertNull(client.tryLock("dl:1", 10, TimeUnit.SECONDS)));
+        other.start();
+        other.join();
+        assertEquals(1, fake.attempts.get());
+        client.unlock(handle);
+        handle = client.tryLock("dl:1", 10, TimeUnit.SECONDS);
+        assertNotNull(handle);
+        client.unlock(handle);
+    }
+
+    @Test
+    void releaseFromAnotherThread() throws Exception {
+        FakeDistributedLockClient fake = new FakeDistributedLockClient();
+        PreLockingDistributedLockClient client = new PreLockingDistributedLockClient(fake);
+        LockHandle handle = client.tryLock("dl:1", 10, TimeUnit.SECONDS);
+        assertNotNull(handle);
+        Thread other = new Thread(() -> client.unlock(handle));
+        other.start();
+        other.join();
+        LockHandle next = client.tryLock("dl:1", 10, TimeUnit.SECONDS);
+        assertNotNull(next);
+        client.unlock(next);
+        assertEquals(0, fake.failures.get());
+    }
+
+    @Test
+    void localWaitCountsAsContention() throws Exception {
+        FakeDistributedLockClient fake = new FakeDistributedLockClient();
+        HotKeyProfiler profiler = new HotKeyProfiler(8, 8, 1, TimeUnit.HOURS);
+        PreLockingDistributedLockClient client = new PreLockingDistributedLockClient(fake, profiler);
+        LockHandle handle = client.tryLock("dl:1", 10, TimeUnit.SECONDS);
+        assertNotNull(handle);
+        CountDownLatch waiting = new CountDownLatch(1);
+        AtomicReference<LockHandle> next = new AtomicReference<>();
+        Thread other = new Thread(() -> {
+            waiting.countDown();
+            next.set(client.tryLock("dl:1", 5, 10, TimeUnit.SECONDS, SPIN));
+        });
+        other.start();
+        waiting.await();
+        Thread.sleep(50);
+        client.unlock(handle);
+        other.join();
+        assertNotNull(next.get());
+        client.unlock(next.get());
+        assertEquals(2, fake.attempts.get());
+        List<HotKey> top = profiler.getTopKeys();
+        assertEquals(1, top.size());
+        assertEquals("dl:1", top.get(0).getKey());
+        assertEquals(1, top.get(0).getContended());
+    }
+}
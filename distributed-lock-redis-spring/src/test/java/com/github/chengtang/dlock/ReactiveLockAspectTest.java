@@ -0,0 +1,159 @@
+package com.github.chengtang.dlock;
+
+import com.github.chengtang.dlock.annotation.Lock;
+import com.github.chengtang.dlock.aop.DistributedLockAspect;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.LockObserver;
+import com.github.chengtang.dlock.core.ReactiveDistributedLockClient;
+import com.github.chengtang.dlock.core.SpinWaitConfig;
+import com.github.chengtang.lockkey.LockKeyParam;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReactiveLockAspectTest {
+    static class FakeReactiveLockClient implements ReactiveDistributedLockClient {
+        final Map<String, String> locks = new ConcurrentHashMap<>();
+        volatile boolean releaseFails;
+
+        @Override
+        public Mono<LockHandle> tryLock(String key, long leaseTime, TimeUnit unit) {
+            return Mono.fromSupplier(() -> {
+                String token = UUID.randomUUID().toString();
+                return locks.putIfAbsent(key, token) == null ? new LockHandle(key, token) : null;
+            });
+        }
+
+        @Override
+        public Mono<LockHandle> tryLock(String key, long waitTime, long leaseTime, TimeUnit unit, SpinWaitConfig spin) {
+            return tryLock(key, leaseTime, unit)
+                    .repeatWhenEmpty(r -> r.delayElements(Duration.ofMillis(5)))
+                    .timeout(Duration.ofNanos(unit.toNanos(waitTime)), Mono.empty());
+        }
+
+        @Override
+        public Mono<Void> unlock(LockHandle handle) {
+            if (releaseFails) {
+                return Mono.error(new IllegalStateException("redis down"));
+            }
+            return Mono.fromRunnable(() -> locks.remove(handle.key(), handle.token()));
+        }
+    }
+
+    static class Service {
+        final Sinks.One<String> gate = Sinks.one();
+
+        @Lock(prefix = "rx", expireTime = 1, timeUnit = TimeUnit.SECONDS)
+        public Mono<String> load(@LockKeyParam Long id) {
+            return gate.asMono();
+        }
+
+        @Lock(prefix = "rx", expireTime = 1, timeUnit = TimeUnit.SECONDS)
+        public Flux<Long> stream(@LockKeyParam Long id) {
+            return Flux.interval(Duration.ofMillis(1));
+        }
+
+        @Lock(prefix = "rx", expireTime = 1, timeUnit = TimeUnit.SECONDS)
+        public Mono<String> fail(@LockKeyParam Long id) {
+            return Mono.error(new IllegalArgumentException("boom"));
+        }
+
+        @Lock(prefix = "rx", expireTime = 1, waitTime = 1, timeUnit = TimeUnit.SECONDS)
+        public CompletableFuture<String> future(@LockKeyParam Long id, CompletableFuture<String> work) {
+            return work;
+        }
+
+        @Lock(prefix = "rx", expireTime = 1, waitTime = 1, timeUnit = TimeUnit.SECONDS)
+        public CompletableFuture<String> threadName(@LockKeyParam Long id) {
+            return CompletableFuture.completedFuture(Thread.currentThread().getName());
+        }
+    }
+
+    private final FakeReactiveLockClient client = new FakeReactiveLockClient();
+    private final Service target = new Service();
+    private final Service proxy = proxy();
+
+    private Service proxy() {
+        AspectJProxyFactory pf = new AspectJProxyFactory(target);
+        pf.addAspect(new DistributedLockAspect(new FakeDistributedLockClient(), LockObserver.NOOP, client));
+        return pf.getProxy();
+    }
+
+    @Test
+    void monoHoldsLockUntilCompletion() {
+        Mono<String> mono = proxy.load(1L);
+        assertFalse(client.locks.containsKey("rx:1"));
+        CompletableFuture<String> result = mono.toFuture();
+        assertTrue(client.locks.containsKey("rx:1"));
+        assertThrows(IllegalStateException.class, () -> proxy.load(1L).block(Duration.ofSeconds(1)));
+        target.gate.tryEmitValue("done");
+        assertEquals("done", result.join());
+        assertFalse(client.locks.containsKey("rx:1"));
+    }
+
+    @Test
+    void fluxReleasesOnCancel() {
+        assertEquals(3, proxy.stream(2L).take(3).count().block(Duration.ofSeconds(1)));
+        assertFalse(client.locks.containsKey("rx:2"));
+    }
+
+    @Test
+    void errorReleasesLock() {
+        assertThrows(IllegalArgumentException.class, () -> proxy.fail(3L).block(Duration.ofSeconds(1)));
+        assertFalse(client.locks.containsKey("rx:3"));
+    }
+
+    @Test
+    void futureHoldsLockUntilCompletion() {
+        CompletableFuture<String> work = new CompletableFuture<>();
+        CompletableFuture<String> result = proxy.future(4L, work);
+        assertTrue(client.locks.containsKey("rx:4"));
+        assertFalse(result.isDone());
+        work.complete("ok");
+        assertEquals("ok", result.join());
+        assertFalse(client.locks.containsKey("rx:4"));
+    }
+
+    @Test
+    void futureMethodRunsOffTimerThread() {
+        client.locks.put("rx:8", "other");
+        CompletableFuture<String> result = proxy.threadName(8L);
+        Mono.delay(Duration.ofMillis(20)).subscribe(t -> client.locks.remove("rx:8"));
+        // 等待中的加锁在 Reactor 定时线程（parallel）上完成，方法体应切到 boundedElastic 执行
+        assertTrue(result.join().startsWith("boundedElastic"), result.join());
+        assertFalse(client.locks.containsKey("rx:8"));
+    }
+
+    @Test
+    void releaseFailureKeepsResult() throws Exception {
+        client.releaseFails = true;
+        CompletableFuture<String> work = new CompletableFuture<>();
+        CompletableFuture<String> result = proxy.future(5L, work);
+        work.complete("ok");
+        assertEquals("ok", result.get(1, TimeUnit.SECONDS));
+        CompletableFuture<String> failed = new CompletableFuture<>();
+        CompletableFuture<String> failedResult = proxy.future(6L, failed);
+        failed.completeExceptionally(new IllegalArgumentException("boom"));
+        ExecutionException e = assertThrows(ExecutionException.class, () -> failedResult.get(1, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+        CompletableFuture<String> mono = proxy.load(7L).toFuture();
+        target.gate.tryEmitValue("done");
+        assertEquals("done", mono.get(1, TimeUnit.SECONDS));
+        assertEquals(3, proxy.stream(8L).take(3).count().block(Duration.ofSeconds(1)));
+    }
+}
@@ -0,0 +1,296 @@
+package com.github.chengtang.dlock;
+
+import com.github.chengtang.dlock.annotation.SpinWaitStrategy;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.LockObserver;
+import com.github.chengtang.dlock.core.SpinWaitConfig;
+import com.github.chengtang.dlock.redis.RedlockDistributedLockClient;
+import com.github.chengtang.dlock.redis.RedlockNode;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RedlockClientTest {
+    private static final SpinWaitConfig SPIN = new SpinWaitConfig(1, 0, SpinWaitStrategy.FIXED, TimeUnit.MILLISECONDS);
+
+    @Test
+    void minorityDownStillAcquires() {
+        List<MemoryNode> nodes = nodes(5);
+        nodes.get(0).down = true;
+        nodes.get(1).down = true;
+        RedlockDistributedLockClient client = new RedlockDistributedLockClient(nodes);
+        try {
+            LockHandle handle = client.tryLock("dl:1", 10, TimeUnit.SECONDS);
+            assertNotNull(handle);
+            assertNull(new RedlockDistributedLockClient(nodes).tryLock("dl:1", 10, TimeUnit.SECONDS));
+            client.unlock(handle);
+            awaitEmpty(nodes);
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void majorityDownFailsAndCleansUp() {
+        List<MemoryNode> nodes = nodes(5);
+        for (int i = 0; i < 3; i++) {
+            nodes.get(i).down = true;
+        }
+        RedlockDistributedLockClient client = new RedlockDistributedLockClient(nodes);
+        try {
+            assertNull(client.tryLock("dl:1", 10, TimeUnit.SECONDS));
+            awaitEmpty(nodes);
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void slowNodesCountAsFailed() {
+        List<MemoryNode> nodes = nodes(3);
+        nodes.get(0).delayMillis = 300;
+        nodes.get(1).delayMillis = 300;
+        RedlockDistributedLockClient client = new RedlockDistributedLockClient(nodes, 50, TimeUnit.MILLISECONDS, 0.01,
+                LockObserver.NOOP);
+        try {
+            long start = System.nanoTime();
+            assertNull(client.tryLock("dl:1", 10, TimeUnit.SECONDS));
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 250);
+            awaitEmpty(nodes);
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void exhaustedValidityFails() {
+        List<MemoryNode> nodes = nodes(3);
+        for (MemoryNode node : nodes) {
+            node.delayMillis = 30;
+        }
+        RedlockDistributedLockClient client = new RedlockDistributedLockClient(nodes);
+        try {
+            // 30ms 的应答延迟已超过 20ms 租约扣除漂移后的有效期
+            assertNull(client.tryLock("dl:1", 20, TimeUnit.MILLISECONDS));
+            assertNotNull(client.tryLock("dl:2", 10, TimeUnit.SECONDS));
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void handleExposesValidity() {
+        List<MemoryNode> nodes = nodes(3);
+        RedlockDistributedLockClient client = new RedlockDistributedLockClient(nodes);
+        try {
+            LockHandle handle = client.tryLock("dl:1", 10, TimeUnit.SECONDS);
+            long validity = handle.remainingValidity(TimeUnit.MILLISECONDS);
+            // 扣除 1% 漂移与 2ms
+            assertTrue(validity > 0 && validity <= 10_000 - 100 - 2, "validity=" + validity);
+            assertEquals(-1L, new LockHandle("dl:2", "t").remainingValidity(TimeUnit.MILLISECONDS));
+            client.unlock(handle);
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void saturatedExecutorRejectsInsteadOfRunningOnCaller() throws Exception {
+        CountDownLatch gate = new CountDownLatch(1);
+        List<RedlockNode> nodes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            nodes.add(new StalledNode(gate));
+        }
+        RedlockDistributedLockClient client = new RedlockDistributedLockClient(nodes, 1, TimeUnit.SECONDS, 0.01,
+                LockObserver.NOOP);
+        ExecutorService pool = Executors.newFixedThreadPool(100);
+        try {
+            List<CompletableFuture<LockHandle>> stalled = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                String key = "dl:" + i;
+                stalled.add(CompletableFuture.supplyAsync(() -> client.tryLock(key, 10, TimeUnit.SECONDS), pool));
+            }
+            Thread.sleep(200);
+            // 线程与队列已满：节点请求被拒绝并按失败计，不在调用线程上等待卡住的节点，也不等满 node-timeout
+            long start = System.nanoTime();
+            assertNull(client.tryLock("dl:caller", 10, TimeUnit.SECONDS));
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsedMillis < 500, "elapsed=" + elapsedMillis);
+            gate.countDown();
+            for (CompletableFuture<LockHandle> future : stalled) {
+                assertNull(future.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            gate.countDown();
+            pool.shutdown();
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void reentrantAndWatchdogUnsupported() {
+        List<MemoryNode> nodes = nodes(3);
+        RedlockDistributedLockClient client = new RedlockDistributedLockClient(nodes);
+        try {
+            LockHandle outer = client.tryLock("dl:1", 10, TimeUnit.SECONDS);
+            assertSame(outer, client.tryLock("dl:1", 10, TimeUnit.SECONDS));
+            client.unlock(outer);
+            assertEquals(1, nodes.get(0).values.size());
+            client.unlock(outer);
+            awaitEmpty(nodes);
+            assertThrows(IllegalArgumentException.class, () -> client.tryLock("dl:2", -1, TimeUnit.SECONDS));
+        } finally {
+            client.shutdown();
+        }
+    }
+
+    @Test
+    void mutualExclusionAcrossClients() throws Exception {
+        List<MemoryNode> nodes = nodes(3);
+        int threads = 8;
+        int rounds = 20;
+        List<RedlockDistributedLockClient> clients = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            clients.add(new RedlockDistributedLockClient(nodes));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicInteger inside = new AtomicInteger();
+        AtomicInteger overlaps = new AtomicInteger();
+        AtomicInteger acquired = new AtomicInteger();
+        for (RedlockDistributedLockClient client : clients) {
+            pool.execute(() -> {
+                try {
+                    for (int r = 0; r < rounds; r++) {
+                        LockHandle handle = client.tryLock("dl:1", 5, 10, TimeUnit.SECONDS, SPIN);
+                        if (handle == null) {
+                            continue;
+                        }
+                        acquired.incrementAndGet();
+                        if (inside.incrementAndGet() > 1) {
+                            overlaps.incrementAndGet();
+                        }
+                        inside.decrementAndGet();
+                        client.unlock(handle);
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        pool.shutdown();
+        clients.forEach(RedlockDistributedLockClient::shutdown);
+        assertEquals(0, overlaps.get());
+        assertEquals(threads * rounds, acquired.get());
+    }
+
+    private static List<MemoryNode> nodes(int n) {
+        MemoryNode[] nodes = new MemoryNode[n];
+        for (int i = 0; i < n; i++) {
+            nodes[i] = new MemoryNode();
+        }
+        return Arrays.asList(nodes);
+    }
+
+    private static void awaitEmpty(List<MemoryNode> nodes) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (nodes.stream().anyMatch(node -> !node.values.isEmpty()) && System.nanoTime() < deadline) {
+            Thread.yield();
+        }
+        for (MemoryNode node : nodes) {
+            assertTrue(node.values.isEmpty(), node.values.toString());
+        }
+    }
+
+    /**
+     * 加锁卡在 gate 上直到放行，用于占满节点线程池
+     */
+    static final class StalledNode implements RedlockNode {
+        private final CountDownLatch gate;
+
+        StalledNode(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public boolean tryAcquire(String key, String token, long leaseMillis) {
+            try {
+                gate.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+
+        @Override
+        public boolean release(String key, String token) {
+            return false;
+        }
+    }
+
+    /**
+     * 进程内的独立节点：down 时抛出连接异常，delayMillis 模拟慢节点；租约到期由读取时判断
+     */
+    static final class MemoryNode implements RedlockNode {
+        final Map<String, String> values = new ConcurrentHashMap<>();
+        final Map<String, Long> expireAt = new ConcurrentHashMap<>();
+        volatile boolean down;
+        volatile long delayMillis;
+
+        @Override
+        public synchronized boolean tryAcquire(String key, String token, long leaseMillis) {
+            delay();
+            Long expire = expireAt.get(key);
+            if (expire != null && expire <= System.currentTimeMillis()) {
+                values.remove(key);
+                expireAt.remove(key);
+            }
+            if (values.putIfAbsent(key, token) != null) {
+                return false;
+            }
+            expireAt.put(key, System.currentTimeMillis() + leaseMillis);
+            return true;
+        }
+
+        @Override
+        public synchronized boolean release(String key, String token) {
+            delay();
+            if (values.remove(key, token)) {
+                expireAt.remove(key);
+                return true;
+            }
+            return false;
+        }
+
+        private void delay() {
+            if (down) {
+                throw new IllegalStateException("node down");
+            }
+            if (delayMillis > 0) {
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+}
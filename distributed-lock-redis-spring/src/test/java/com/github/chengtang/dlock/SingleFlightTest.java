@@ -0,0 +1,199 @@
+package com.github.chengtang.dlock;
+
+import com.github.chengtang.dlock.annotation.Lock;
+import com.github.chengtang.dlock.aop.DistributedLockAspect;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.LockObserver;
+import com.github.chengtang.dlock.core.SingleFlightResult;
+import com.github.chengtang.dlock.core.SingleFlightResultStore;
+import com.github.chengtang.dlock.redis.AllowListSerializationRedisSerializer;
+import com.github.chengtang.lockkey.LockKeyParam;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.data.redis.serializer.JdkSerializationRedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightTest {
+    static class Service {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @Lock(prefix = "sf", waitTime = 2, expireTime = 5, singleFlight = true, singleFlightTtl = 1)
+        public int load(@LockKeyParam Long id) throws InterruptedException {
+            Thread.sleep(200);
+            return calls.incrementAndGet();
+        }
+
+        @Lock(prefix = "sf", waitTime = 2, expireTime = 5, singleFlight = true)
+        public int fail(@LockKeyParam Long id) {
+            calls.incrementAndGet();
+            throw new IllegalArgumentException("boom");
+        }
+
+        @Lock(prefix = "sf", waitTime = 2, expireTime = 5, singleFlight = true)
+        public int slowFail(@LockKeyParam Long id) throws InterruptedException {
+            calls.incrementAndGet();
+            Thread.sleep(200);
+            throw new IllegalArgumentException("boom");
+        }
+    }
+
+    static class InMemoryStore implements SingleFlightResultStore {
+        final Map<String, SingleFlightResult> results = new ConcurrentHashMap<>();
+
+        @Override
+        public void publish(String key, SingleFlightResult result, long ttl, TimeUnit unit) {
+            results.put(key, result);
+        }
+
+        @Override
+        public SingleFlightResult fetch(String key) {
+            return results.get(key);
+        }
+    }
+
+    private static Service proxy(FakeDistributedLockClient client, InMemoryStore store, Service target) {
+        AspectJProxyFactory pf = new AspectJProxyFactory(target);
+        pf.addAspect(new DistributedLockAspect(client, LockObserver.NOOP, null, store));
+        return pf.getProxy();
+    }
+
+    @Test
+    void localCallersShareOneExecution() throws Exception {
+        Service target = new Service();
+        Service proxy = proxy(new FakeDistributedLockClient(), new InMemoryStore(), target);
+        ExecutorService pool = Executors.newFixedThreadPool(5);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Integer>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return proxy.load(1L);
+            }));
+        }
+        start.countDown();
+        for (Future<Integer> result : results) {
+            assertEquals(1, result.get());
+        }
+        pool.shutdown();
+        assertEquals(1, target.calls.get());
+    }
+
+    @Test
+    void localWaitersGetTheirOwnExceptionWrappingTheLeaders() throws Exception {
+        Service target = new Service();
+        Service proxy = proxy(new FakeDistributedLockClient(), new InMemoryStore(), target);
+        ExecutorService pool = Executors.newFixedThreadPool(3);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Throwable>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                try {
+                    proxy.slowFail(1L);
+                    return null;
+                } catch (RuntimeException e) {
+                    return e;
+                }
+            }));
+        }
+        start.countDown();
+        List<Throwable> errors = new ArrayList<>();
+        for (Future<Throwable> result : results) {
+            errors.add(result.get());
+        }
+        pool.shutdown();
+        assertEquals(1, target.calls.get());
+        Throwable leader = errors.stream().filter(e -> e instanceof IllegalArgumentException).findFirst().orElseThrow(AssertionError::new);
+        Set<Throwable> distinct = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Throwable e : errors) {
+            if (e != leader) {
+                assertInstanceOf(IllegalStateException.class, e);
+                assertSame(leader, e.getCause());
+            }
+            distinct.add(e);
+        }
+        assertEquals(3, distinct.size());
+    }
+
+    @Test
+    void waiterReusesResultPublishedByRemoteHolder() throws Exception {
+        FakeDistributedLockClient client = new FakeDistributedLockClient();
+        InMemoryStore store = new InMemoryStore();
+        Service target = new Service();
+        Service proxy = proxy(client, store, target);
+        // 模拟另一实例持有锁，执行完毕后发布结果再释放
+        LockHandle remote = client.tryLock("sf:1", 5, TimeUnit.SECONDS);
+        new Thread(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException ignored) {
+            }
+            store.publish("sf:1", SingleFlightResult.value(42), 1, TimeUnit.SECONDS);
+            client.unlock(remote);
+        }).start();
+        assertEquals(42, proxy.load(1L));
+        assertEquals(0, target.calls.get());
+        assertEquals(1, proxy.load(1L), "an uncontended call executes instead of reusing the last result");
+    }
+
+    @Test
+    void exceptionIsSharedAndPublished() {
+        InMemoryStore store = new InMemoryStore();
+        Service proxy = proxy(new FakeDistributedLockClient(), store, new Service());
+        assertThrows(IllegalArgumentException.class, () -> proxy.fail(1L));
+        assertThrows(IllegalArgumentException.class, () -> store.fetch("sf:1").get());
+    }
+
+    static class Payload implements Serializable {
+        private static final long serialVersionUID = 1L;
+        final String name;
+
+        Payload(String name) {
+            this.name = name;
+        }
+    }
+
+    @Test
+    void allowListSerializerRejectsUnlistedTypes() throws Throwable {
+        AllowListSerializationRedisSerializer serializer = new AllowListSerializationRedisSerializer();
+        SingleFlightResult value = (SingleFlightResult) serializer.deserialize(
+                serializer.serialize(SingleFlightResult.value(new ArrayList<>(Arrays.asList("a", 1L, new int[]{2})))));
+        assertEquals(3, ((List<?>) value.get()).size());
+        SingleFlightResult error = (SingleFlightResult) serializer.deserialize(
+                serializer.serialize(SingleFlightResult.error(new IllegalStateException("boom"))));
+        assertThrows(IllegalStateException.class, error::get);
+
+        SingleFlightResult payload = SingleFlightResult.value(new Payload[]{new Payload("p")});
+        assertThrows(SerializationException.class, () -> serializer.serialize(payload));
+        // 其他写入方以不受限的 JDK 序列化写入的对象同样被拒绝
+        byte[] forged = new JdkSerializationRedisSerializer().serialize(payload);
+        assertThrows(SerializationException.class, () -> serializer.deserialize(forged));
+
+        AllowListSerializationRedisSerializer listed = new AllowListSerializationRedisSerializer(
+                Collections.singletonList(SingleFlightTest.class.getPackage().getName() + "."));
+        Payload[] read = (Payload[]) ((SingleFlightResult) listed.deserialize(forged)).get();
+        assertEquals("p", read[0].name);
+    }
+}
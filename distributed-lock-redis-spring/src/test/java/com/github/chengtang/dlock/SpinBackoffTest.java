@@ -0,0 +1,87 @@
+package com.github.chengtang.dlock;
+
+import com.github.chengtang.dlock.annotation.SpinWaitStrategy;
+import com.github.chengtang.dlock.core.HoldTimeEstimator;
+import com.github.chengtang.dlock.core.SpinBackoff;
+import com.github.chengtang.dlock.core.SpinWaitConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpinBackoffTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static SpinBackoff backoff(SpinWaitStrategy strategy, int maxInterval) {
+        return new SpinBackoff(new SpinWaitConfig(10, 0, strategy, TimeUnit.MILLISECONDS, maxInterval));
+    }
+
+    @Test
+    void classicStrategiesKeepTheirSequence() {
+        SpinBackoff fixed = backoff(SpinWaitStrategy.FIXED, 0);
+        SpinBackoff linear = backoff(SpinWaitStrategy.LINEAR, 0);
+        SpinBackoff exponential = backoff(SpinWaitStrategy.EXPONENTIAL, 0);
+        long[] expectedLinear = {10, 20, 30, 40};
+        long[] expectedExponential = {10, 20, 40, 80};
+        for (int i = 0; i < 4; i++) {
+            assertEquals(10 * MS, fixed.next(0L));
+            assertEquals(expectedLinear[i] * MS, linear.next(0L));
+            assertEquals(expectedExponential[i] * MS, exponential.next(0L));
+        }
+    }
+
+    @Test
+    void maxIntervalCapsGrowth() {
+        SpinBackoff exponential = backoff(SpinWaitStrategy.EXPONENTIAL, 25);
+        exponential.next(0L);
+        exponential.next(0L);
+        for (int i = 0; i < 40; i++) {
+            assertEquals(25 * MS, exponential.next(0L));
+        }
+    }
+
+    @Test
+    void jitterStaysWithinBounds() {
+        SpinBackoff full = backoff(SpinWaitStrategy.FULL_JITTER, 50);
+        SpinBackoff decorrelated = backoff(SpinWaitStrategy.DECORRELATED_JITTER, 50);
+        long[] ceilings = {10, 20, 40, 50, 50, 50};
+        long last = 10 * MS;
+        assertEquals(last, decorrelated.next(0L));
+        for (long ceiling : ceilings) {
+            long f = full.next(0L);
+            assertTrue(f >= 0 && f <= ceiling * MS, "full jitter " + f);
+            long d = decorrelated.next(0L);
+            assertTrue(d >= 10 * MS && d <= Math.min(50 * MS, last * 3), "decorrelated jitter " + d);
+            last = d;
+        }
+    }
+
+    @Test
+    void adaptiveFollowsHoldTimeEstimate() {
+        HoldTimeEstimator estimator = new HoldTimeEstimator(10);
+        assertEquals(0L, estimator.remainingNanos("k", 0L));
+        estimator.record("k", 200 * MS);
+        assertEquals(100 * MS, estimator.remainingNanos("k", 0L));
+        assertEquals(0L, estimator.remainingNanos("k", 150 * MS));
+        SpinBackoff adaptive = backoff(SpinWaitStrategy.ADAPTIVE, 0);
+        long sleep = adaptive.next(estimator.remainingNanos("k", 30 * MS));
+        assertTrue(sleep >= 70 * MS && sleep <= 80 * MS, "adaptive " + sleep);
+        long fallback = adaptive.next(0L);
+        assertTrue(fallback >= 10 * MS && fallback <= 20 * MS, "adaptive without estimate " + fallback);
+    }
+
+    @Test
+    void estimatorEvictsLeastRecentlyUsedKey() {
+        HoldTimeEstimator estimator = new HoldTimeEstimator(2);
+        estimator.record("a", 100 * MS);
+        estimator.record("b", 100 * MS);
+        assertEquals(50 * MS, estimator.remainingNanos("a", 0L));
+        // 达到上限后新 key 仍被记录，淘汰最久未使用的 b
+        estimator.record("c", 100 * MS);
+        assertEquals(50 * MS, estimator.remainingNanos("c", 0L));
+        assertEquals(50 * MS, estimator.remainingNanos("a", 0L));
+        assertEquals(0L, estimator.remainingNanos("b", 0L));
+    }
+}
@@ -0,0 +1,29 @@
+package com.github.chengtang.sample.service;
+
+import com.github.chengtang.dlock.annotation.Lock;
+import com.github.chengtang.dlock.core.LockContext;
+import com.github.chengtang.lockkey.LockKeyParam;
+import com.github.chengtang.sample.dto.OrderRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Service
+public class InventoryService {
+    private final AtomicInteger reserved = new AtomicInteger();
+    private final Map<Long, Long> stockFences = new ConcurrentHashMap<>();
+
+    @Lock(prefix = "dl", delimiter = ":", expireTime = 5, waitTime = 0, timeUnit = TimeUnit.SECONDS)
+    public int reserve(OrderRequest req, @LockKeyParam Long orderId) {
+        return reserved.incrementAndGet();
+    }
+
+    @Lock(prefix = "stock", delimiter = ":", expireTime = 5, waitTime = 1, timeUnit = TimeUnit.SECONDS)
+    public boolean adjustStock(@LockKeyParam Long skuId) {
+        long fence = LockContext.fence();
+        return stockFences.merge(skuId, fence, Math::max) == fence;
+    }
+}
@@ -13,6 +13,11 @@ import java.util.concurrent.atomic.AtomicInteger;
 @Service
 public class OrderService {
     private final AtomicInteger calls = new AtomicInteger();
+    private final InventoryService inventoryService;
+
+    public OrderService(InventoryService inventoryService) {
+        this.inventoryService = inventoryService;
+    }
 
     @Lock(prefix = "dl", delimiter = ":", expireTime = 5, waitTime = 0, timeUnit = TimeUnit.SECONDS)
     public int place(OrderRequest req, @LockKeyParam Long orderId) {
@@ -44,4 +49,10 @@ public class OrderService {
         }
         return calls.incrementAndGet();
     }
+
+    @Lock(prefix = "dl", delimiter = ":", expireTime = 5, waitTime = 0, timeUnit = TimeUnit.SECONDS)
+    public int placeNested(OrderRequest req, @LockKeyParam Long orderId) {
+        inventoryService.reserve(req, orderId);
+        return calls.incrementAndGet();
+    }
 }
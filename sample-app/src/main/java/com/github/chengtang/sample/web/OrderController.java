@@ -26,4 +26,9 @@ public class OrderController {
     public int placeWaitLinear(@RequestBody OrderRequest req) {
         return service.placeWaitLinear(req, req.getOrderId());
     }
+
+    @PostMapping("/orders/place-nested")
+    public int placeNested(@RequestBody OrderRequest req) {
+        return service.placeNested(req, req.getOrderId());
+    }
 }
@@ -0,0 +1,122 @@
+package com.github.chengtang.sample;
+
+import com.github.chengtang.dlock.core.DistributedLockClient;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.LockObserver;
+import com.github.chengtang.dlock.redis.AsyncLockReleaser;
+import com.github.chengtang.dlock.redis.RedisDistributedLockClient;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(properties = {
+        "spring.data.redis.host=127.0.0.1",
+        "spring.data.redis.port=6379",
+        "distributed-lock.async-release.enabled=true",
+        "distributed-lock.async-release.max-delay=20ms"
+})
+class AsyncReleaseIntegrationTest {
+    @Autowired
+    DistributedLockClient client;
+    @Autowired
+    StringRedisTemplate template;
+
+    @Test
+    void localReacquireSeesQueuedRelease() {
+        String key = "async:it:" + System.nanoTime();
+        for (int i = 0; i < 20; i++) {
+            LockHandle handle = client.tryLock(key, 10, TimeUnit.SECONDS);
+            assertNotNull(handle, "round " + i);
+            client.unlock(handle);
+        }
+    }
+
+    @Test
+    void queuedReleasesReachRedisWithinDelay() throws Exception {
+        // 另一个客户端模拟其他实例，只能在释放发送到 Redis 后获取
+        RedisDistributedLockClient other = new RedisDistributedLockClient(template);
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            String key = "async:batch:" + System.nanoTime() + ":" + i;
+            keys.add(key);
+            client.unlock(client.tryLock(key, 10, TimeUnit.SECONDS));
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+        while (Boolean.TRUE.equals(template.hasKey(keys.get(keys.size() - 1))) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        for (String key : keys) {
+            assertFalse(Boolean.TRUE.equals(template.hasKey(key)), key);
+            LockHandle handle = other.tryLock(key, 1, TimeUnit.SECONDS);
+            assertTrue(handle != null, key);
+            other.unlock(handle);
+        }
+    }
+
+    @Test
+    void sharedKeyReleasesAllSettleAndSurviveScriptFlush() throws Exception {
+        AtomicInteger missed = new AtomicInteger();
+        LockObserver observer = new LockObserver() {
+            @Override
+            public void onReleaseMissed(String name, String key) {
+                missed.incrementAndGet();
+            }
+        };
+        AsyncLockReleaser releaser = new AsyncLockReleaser(template, observer, 100, 16, 50, TimeUnit.MILLISECONDS);
+        RedisDistributedLockClient permits = new RedisDistributedLockClient(template, null, null, observer);
+        permits.setAsyncReleaser(releaser);
+        String key = "async:permit:" + System.nanoTime();
+        try {
+            // 同一 key 的多个许可排队释放，加锁前全部同步执行
+            for (int round = 0; round < 2; round++) {
+                List<LockHandle> held = acquirePermits(permits, key, 3);
+                held.forEach(permits::unlock);
+            }
+            LockHandle again = permits.tryAcquirePermit(key, 3, 0, 10, TimeUnit.SECONDS, null);
+            assertNotNull(again);
+            assertEquals(1L, template.opsForZSet().size(key));
+            permits.unlock(again);
+
+            // 脚本缓存被清空后流水线中的 EVALSHA 返回 NOSCRIPT，逐个重试
+            List<LockHandle> held = acquirePermits(permits, key, 3);
+            template.execute((RedisCallback<Void>) connection -> {
+                connection.scriptingCommands().scriptFlush();
+                return null;
+            });
+            held.forEach(permits::unlock);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (Boolean.TRUE.equals(template.hasKey(key)) && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            assertFalse(Boolean.TRUE.equals(template.hasKey(key)));
+            assertEquals(0, missed.get());
+        } finally {
+            releaser.shutdown();
+            template.delete(key);
+        }
+    }
+
+    private static List<LockHandle> acquirePermits(RedisDistributedLockClient client, String key, int n) {
+        List<LockHandle> held = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            LockHandle handle = client.tryAcquirePermit(key, n, 0, 10, TimeUnit.SECONDS, null);
+            assertNotNull(handle);
+            held.add(handle);
+        }
+        return held;
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.chengtang.sample;
+
+import com.github.chengtang.dlock.annotation.SpinWaitStrategy;
+import com.github.chengtang.dlock.core.DistributedLockClient;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.SpinWaitConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(properties = {
+        "spring.data.redis.host=127.0.0.1",
+        "spring.data.redis.port=6379",
+        "distributed-lock.fair.enabled=true"
+})
+class FairLockIntegrationTest {
+    @Autowired
+    DistributedLockClient client;
+
+    @Test
+    void waitersAcquireInArrivalOrder() throws Exception {
+        String key = "fair:it:" + System.nanoTime();
+        // 轮询间隔远大于持有时间，非公平模式下谁先轮询到谁获得锁
+        SpinWaitConfig spin = new SpinWaitConfig(150, 0, SpinWaitStrategy.FIXED, TimeUnit.MILLISECONDS);
+        LockHandle first = client.tryLock(key, 10, TimeUnit.SECONDS);
+        assertNotNull(first);
+        List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> waiters = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                int n = i;
+                waiters.add(pool.submit(() -> {
+                    LockHandle handle = client.tryLock(key, 8000, 5000, TimeUnit.MILLISECONDS, spin);
+                    assertNotNull(handle);
+                    order.add(n);
+                    client.unlock(handle);
+                }));
+                Thread.sleep(80);
+            }
+            client.unlock(first);
+            for (Future<?> waiter : waiters) {
+                waiter.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(Arrays.asList(0, 1, 2, 3), order);
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.chengtang.sample;
+
+import com.github.chengtang.dlock.core.DistributedLockClient;
+import com.github.chengtang.dlock.core.LockContext;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.redis.RedisDistributedLockClient;
+import com.github.chengtang.sample.service.InventoryService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(properties = {
+        "spring.data.redis.host=127.0.0.1",
+        "spring.data.redis.port=6379",
+        "distributed-lock.fencing.enabled=true"
+})
+class FencingIntegrationTest {
+    @Autowired
+    DistributedLockClient client;
+    @Autowired
+    InventoryService inventoryService;
+    @Autowired
+    StringRedisTemplate template;
+
+    @Test
+    void fenceIncreasesAndRejectsExpiredHolder() throws Exception {
+        String key = "fence:it:" + System.nanoTime();
+        LockHandle stale = client.tryLock(key, 50, TimeUnit.MILLISECONDS);
+        assertNotNull(stale);
+        assertEquals(Long.toString(stale.fence()), template.opsForValue().get(key));
+        Thread.sleep(100);
+        // 旧持有者的租约已过期，其他实例拿到更大的 token，旧持有者的释放不会删除新持有者的锁
+        RedisDistributedLockClient other = new RedisDistributedLockClient(template);
+        other.setFencing(true);
+        LockHandle current = other.tryLock(key, 10, TimeUnit.SECONDS);
+        assertNotNull(current);
+        assertTrue(current.fence() > stale.fence());
+        long counterTtl = template.getExpire("{" + key + "}:fence", TimeUnit.DAYS);
+        assertTrue(counterTtl > 0 && counterTtl <= 30, "fence counter ttl " + counterTtl);
+        client.unlock(stale);
+        assertEquals(current.token(), template.opsForValue().get(key));
+        other.unlock(current);
+    }
+
+    @Test
+    void guardedMethodReadsFence() {
+        long sku = System.nanoTime();
+        assertTrue(inventoryService.adjustStock(sku));
+        assertTrue(inventoryService.adjustStock(sku));
+        assertNull(LockContext.current());
+        assertThrows(IllegalStateException.class, LockContext::fence);
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.chengtang.sample;
+
+import com.github.chengtang.dlock.core.DistributedLockClient;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.metrics.HotKeyProfiler;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(properties = {
+        "spring.data.redis.host=127.0.0.1",
+        "spring.data.redis.port=6379",
+        "distributed-lock.hot-keys.enabled=true"
+})
+class HotKeyIntegrationTest {
+    @Autowired
+    DistributedLockClient client;
+    @Autowired
+    HotKeyProfiler profiler;
+
+    @Test
+    void contendedKeyExposedThroughJmx() throws Exception {
+        profiler.reset();
+        String key = "hot:it:" + System.nanoTime();
+        LockHandle handle = client.tryLock(key, 10, TimeUnit.SECONDS);
+        assertNotNull(handle);
+        try {
+            assertNull(CompletableFuture.supplyAsync(() -> client.tryLock(key, 10, TimeUnit.SECONDS)).get());
+        } finally {
+            client.unlock(handle);
+        }
+        CompositeData[] top = (CompositeData[]) ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName(HotKeyProfiler.OBJECT_NAME), "TopKeys");
+        assertEquals(1, top.length);
+        assertEquals(key, top[0].get("key"));
+        assertEquals(1L, top[0].get("contended"));
+    }
+}
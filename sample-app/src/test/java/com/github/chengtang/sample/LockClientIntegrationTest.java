@@ -0,0 +1,60 @@
+package com.github.chengtang.sample;
+
+import com.github.chengtang.dlock.annotation.SpinWaitStrategy;
+import com.github.chengtang.dlock.core.DistributedLockClient;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.SpinWaitConfig;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(properties = {
+        "spring.data.redis.host=127.0.0.1",
+        "spring.data.redis.port=6379",
+        "distributed-lock.startup.validation=fail",
+        "distributed-lock.startup.preload-scripts=true",
+        "distributed-lock.token.node-id=sample-it"
+})
+class LockClientIntegrationTest {
+    @Autowired
+    DistributedLockClient client;
+    @Autowired
+    StringRedisTemplate template;
+
+    @Test
+    void holderReadableFromLockValue() {
+        String key = "token:it:" + System.nanoTime();
+        LockHandle handle = client.tryLock(key, 5, TimeUnit.SECONDS);
+        assertNotNull(handle);
+        String value = template.opsForValue().get(key);
+        assertEquals(handle.token(), value);
+        assertTrue(value.startsWith("sample-it:"), value);
+        client.unlock(handle);
+    }
+
+    @Test
+    void waiterRetriesWhenHolderLeaseExpires() throws Exception {
+        String key = "ttl:it:" + System.nanoTime();
+        // 持有者不释放，租约 300ms 后过期；等待者的自旋间隔远大于租约，应在租约到期时重试而不是睡满间隔
+        SpinWaitConfig spin = new SpinWaitConfig(2000, 0, SpinWaitStrategy.FIXED, TimeUnit.MILLISECONDS);
+        assertNotNull(client.tryLock(key, 300, TimeUnit.MILLISECONDS));
+        long start = System.nanoTime();
+        LockHandle handle = CompletableFuture
+                .supplyAsync(() -> client.tryLock(key, 1500, 5000, TimeUnit.MILLISECONDS, spin))
+                .get();
+        long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertNotNull(handle);
+        assertTrue(waited < 1000, "waited=" + waited);
+        client.unlock(handle);
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.chengtang.sample;
+
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.LockObserver;
+import com.github.chengtang.dlock.redis.RedisDistributedLockClient;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(properties = {
+        "spring.data.redis.host=127.0.0.1",
+        "spring.data.redis.port=6379"
+})
+class MultiKeyLockIntegrationTest {
+    @Autowired
+    StringRedisTemplate template;
+
+    @Test
+    void allOrNothingInOneScript() {
+        allOrNothing(new RedisDistributedLockClient(template));
+    }
+
+    @Test
+    void laterSlotGroupFailureRollsBackEarlierGroups() {
+        RedisDistributedLockClient client = new RedisDistributedLockClient(template);
+        client.setGroupKeysBySlot(true);
+        allOrNothing(client);
+    }
+
+    private void allOrNothing(RedisDistributedLockClient client) {
+        List<String> keys = keys(5);
+        // 分 slot 时按 slot 顺序加锁，占用 slot 最大的 key 使前面的组先获取、随后回滚
+        String held = keys.get(keys.size() - 1);
+        template.opsForValue().set(held, "other", 10, TimeUnit.SECONDS);
+        try {
+            assertNull(client.tryLockAll(keys, 0, 10, TimeUnit.SECONDS, null));
+            for (String key : keys.subList(0, keys.size() - 1)) {
+                assertFalse(Boolean.TRUE.equals(template.hasKey(key)), key);
+            }
+            assertEquals("other", template.opsForValue().get(held));
+            template.delete(held);
+            LockHandle handle = client.tryLockAll(keys, 0, 10, TimeUnit.SECONDS, null);
+            assertNotNull(handle);
+            for (String key : keys) {
+                assertEquals(handle.token(), template.opsForValue().get(key));
+            }
+            client.unlockAll(handle);
+            for (String key : keys) {
+                assertFalse(Boolean.TRUE.equals(template.hasKey(key)), key);
+            }
+        } finally {
+            template.delete(keys);
+        }
+    }
+
+    /**
+     * 位于不同 slot 的 n 个 key，按 slot 升序
+     */
+    private static List<String> keys(int n) {
+        String prefix = "multi:it:" + System.nanoTime() + ":";
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; keys.size() < n; i++) {
+            String key = prefix + i;
+            int slot = ClusterSlotHashUtil.calculateSlot(key);
+            if (keys.stream().noneMatch(k -> ClusterSlotHashUtil.calculateSlot(k) == slot)) {
+                keys.add(key);
+            }
+        }
+        keys.sort(Comparator.comparingInt(ClusterSlotHashUtil::calculateSlot));
+        return keys;
+    }
+}
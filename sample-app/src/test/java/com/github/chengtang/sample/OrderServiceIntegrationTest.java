@@ -150,4 +150,15 @@ class OrderServiceIntegrationTest {
         long cost = t2cost.get();
         org.junit.jupiter.api.Assertions.assertTrue(cost >= 700 && cost <= 3000, "t2 cost=" + cost);
     }
+
+    @Test
+    void nestedLockOnSameKeyShouldReenter() {
+        RestTemplate rt = new RestTemplate();
+        String url = "http://localhost:" + port + "/orders/place-nested";
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<String> body = new HttpEntity<>("{\"userId\":2,\"orderId\":19}", headers);
+        org.springframework.http.ResponseEntity<Integer> resp = rt.postForEntity(url, body, Integer.class);
+        assertEquals(200, resp.getStatusCode().value());
+    }
 }
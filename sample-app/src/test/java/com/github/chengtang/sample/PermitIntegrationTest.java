@@ -0,0 +1,81 @@
+package com.github.chengtang.sample;
+
+import com.github.chengtang.dlock.annotation.SpinWaitStrategy;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.SpinWaitConfig;
+import com.github.chengtang.dlock.redis.RedisDistributedLockClient;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(properties = {
+        "spring.data.redis.host=127.0.0.1",
+        "spring.data.redis.port=6379"
+})
+class PermitIntegrationTest {
+    private static final SpinWaitConfig SPIN = new SpinWaitConfig(10, 0, SpinWaitStrategy.FIXED, TimeUnit.MILLISECONDS);
+
+    @Autowired
+    StringRedisTemplate template;
+
+    @Test
+    void capsHoldersAndAdmitsWaiterOnRelease() throws Exception {
+        RedisDistributedLockClient client = new RedisDistributedLockClient(template);
+        String key = "permit:it:" + System.nanoTime();
+        List<LockHandle> held = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            LockHandle handle = client.tryAcquirePermit(key, 3, 0, 10, TimeUnit.SECONDS, null);
+            assertNotNull(handle);
+            held.add(handle);
+        }
+        assertEquals(3L, template.opsForZSet().size(key));
+        assertNull(client.tryAcquirePermit(key, 3, 0, 10, TimeUnit.SECONDS, null));
+
+        CompletableFuture<LockHandle> waiter = CompletableFuture.supplyAsync(
+                () -> client.tryAcquirePermit(key, 3, 5, 10, TimeUnit.SECONDS, SPIN));
+        Thread.sleep(100);
+        assertFalse(waiter.isDone());
+        client.unlock(held.remove(0));
+        LockHandle admitted = waiter.get(5, TimeUnit.SECONDS);
+        assertNotNull(admitted);
+        held.add(admitted);
+        assertEquals(3L, template.opsForZSet().size(key));
+
+        for (LockHandle handle : held) {
+            client.unlock(handle);
+        }
+        assertFalse(Boolean.TRUE.equals(template.hasKey(key)));
+    }
+
+    @Test
+    void expiredMemberReclaimed() throws Exception {
+        RedisDistributedLockClient client = new RedisDistributedLockClient(template);
+        String key = "permit:it:" + System.nanoTime();
+        LockHandle expiring = client.tryAcquirePermit(key, 2, 0, 100, TimeUnit.MILLISECONDS, null);
+        LockHandle holder = client.tryAcquirePermit(key, 2, 0, 10, TimeUnit.SECONDS, null);
+        assertNotNull(expiring);
+        assertNotNull(holder);
+        assertNull(client.tryAcquirePermit(key, 2, 0, 10, TimeUnit.SECONDS, null));
+        Thread.sleep(200);
+        LockHandle reclaimed = client.tryAcquirePermit(key, 2, 0, 10, TimeUnit.SECONDS, null);
+        assertNotNull(reclaimed);
+        assertNull(template.opsForZSet().score(key, expiring.token()));
+        assertEquals(2L, template.opsForZSet().size(key));
+        client.unlock(holder);
+        client.unlock(reclaimed);
+        assertFalse(Boolean.TRUE.equals(template.hasKey(key)));
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.chengtang.sample;
+
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.LockObserver;
+import com.github.chengtang.dlock.redis.LockWatchdog;
+import com.github.chengtang.dlock.redis.RedisDistributedLockClient;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(properties = {
+        "spring.data.redis.host=127.0.0.1",
+        "spring.data.redis.port=6379"
+})
+class ReadWriteLockIntegrationTest {
+    @Autowired
+    StringRedisTemplate template;
+
+    @Test
+    void readersShareAndExcludeWriters() {
+        RedisDistributedLockClient client = new RedisDistributedLockClient(template);
+        String key = "rw:it:" + System.nanoTime();
+        LockHandle r1 = client.tryReadLock(key, 0, 10, TimeUnit.SECONDS, null);
+        LockHandle r2 = client.tryReadLock(key, 0, 10, TimeUnit.SECONDS, null);
+        assertNotNull(r1);
+        assertNotNull(r2);
+        assertEquals(2L, template.opsForHash().size(key));
+        // 另一个实例的写锁被读者挡住
+        RedisDistributedLockClient other = new RedisDistributedLockClient(template);
+        assertNull(other.tryLock(key, 10, TimeUnit.SECONDS));
+        client.unlock(r1);
+        assertTrue(Boolean.TRUE.equals(template.hasKey(key)));
+        assertNull(other.tryLock(key, 10, TimeUnit.SECONDS));
+        client.unlock(r2);
+        assertFalse(Boolean.TRUE.equals(template.hasKey(key)));
+
+        LockHandle writer = other.tryLock(key, 10, TimeUnit.SECONDS);
+        assertNotNull(writer);
+        assertNull(client.tryReadLock(key, 0, 10, TimeUnit.SECONDS, null));
+        other.unlock(writer);
+        LockHandle r3 = client.tryReadLock(key, 0, 10, TimeUnit.SECONDS, null);
+        assertNotNull(r3);
+        client.unlock(r3);
+        assertFalse(Boolean.TRUE.equals(template.hasKey(key)));
+    }
+
+    @Test
+    void expiredReaderCleanedUp() throws Exception {
+        RedisDistributedLockClient client = new RedisDistributedLockClient(template);
+        String key = "rw:it:" + System.nanoTime();
+        LockHandle shortLived = client.tryReadLock(key, 0, 100, TimeUnit.MILLISECONDS, null);
+        LockHandle longLived = client.tryReadLock(key, 0, 10, TimeUnit.SECONDS, null);
+        assertNotNull(shortLived);
+        assertNotNull(longLived);
+        Thread.sleep(200);
+        LockHandle next = client.tryReadLock(key, 0, 10, TimeUnit.SECONDS, null);
+        assertNotNull(next);
+        assertFalse(template.opsForHash().hasKey(key, shortLived.token()));
+        assertEquals(2L, template.opsForHash().size(key));
+        client.unlock(longLived);
+        client.unlock(next);
+        assertFalse(Boolean.TRUE.equals(template.hasKey(key)));
+    }
+
+    @Test
+    void watchdogRenewsEachReader() throws Exception {
+        LockWatchdog watchdog = new LockWatchdog(template, 300, 100, 500);
+        RedisDistributedLockClient client = new RedisDistributedLockClient(template, null, watchdog, LockObserver.NOOP);
+        String key = "rw:it:" + System.nanoTime();
+        try {
+            LockHandle r1 = client.tryReadLock(key, 0, -1, TimeUnit.MILLISECONDS, null);
+            LockHandle r2 = client.tryReadLock(key, 0, -1, TimeUnit.MILLISECONDS, null);
+            assertNotNull(r1);
+            assertNotNull(r2);
+            assertEquals(2, watchdog.watching());
+            Thread.sleep(900);
+            // 加锁脚本会清理已过期的读者，两个读者仍在说明各自的过期时间都被续期
+            LockHandle probe = client.tryReadLock(key, 0, 10, TimeUnit.SECONDS, null);
+            assertNotNull(probe);
+            assertTrue(template.opsForHash().hasKey(key, r1.token()));
+            assertTrue(template.opsForHash().hasKey(key, r2.token()));
+            client.unlock(probe);
+            client.unlock(r1);
+            client.unlock(r2);
+            assertEquals(0, watchdog.watching());
+            assertFalse(Boolean.TRUE.equals(template.hasKey(key)));
+        } finally {
+            watchdog.shutdown();
+            template.delete(key);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.github.chengtang.sample;
+
+import com.github.chengtang.dlock.annotation.SpinWaitStrategy;
+import com.github.chengtang.dlock.core.DistributedLockClient;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.SpinWaitConfig;
+import com.github.chengtang.dlock.redis.RedisRedlockNode;
+import com.github.chengtang.dlock.redis.RedlockDistributedLockClient;
+import com.github.chengtang.dlock.redis.RedlockNode;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 以本地 Redis 的三个数据库模拟三个独立节点
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(properties = {
+        "spring.data.redis.host=127.0.0.1",
+        "spring.data.redis.port=6379",
+        "distributed-lock.redlock.enabled=true",
+        "distributed-lock.redlock.nodes=redis://127.0.0.1:6379/1,redis://127.0.0.1:6379/2,redis://127.0.0.1:6379/3"
+})
+class RedlockIntegrationTest {
+    @Autowired
+    DistributedLockClient client;
+
+    @Test
+    void quorumClientExcludesOtherInstances() throws Exception {
+        assertTrue(client instanceof RedlockDistributedLockClient);
+        assertEquals(2, ((RedlockDistributedLockClient) client).quorum());
+        List<StringRedisTemplate> templates = new ArrayList<>();
+        List<RedlockNode> nodes = new ArrayList<>();
+        for (int db = 1; db <= 3; db++) {
+            RedisStandaloneConfiguration config = new RedisStandaloneConfiguration("127.0.0.1", 6379);
+            config.setDatabase(db);
+            LettuceConnectionFactory factory = new LettuceConnectionFactory(config);
+            factory.afterPropertiesSet();
+            StringRedisTemplate template = new StringRedisTemplate(factory);
+            templates.add(template);
+            nodes.add(new RedisRedlockNode(template, factory));
+        }
+        // 另一个客户端模拟其他实例
+        RedlockDistributedLockClient other = new RedlockDistributedLockClient(nodes);
+        try {
+            String key = "redlock:it:" + System.nanoTime();
+            LockHandle handle = client.tryLock(key, 10, TimeUnit.SECONDS);
+            assertNotNull(handle);
+            // 达到多数即返回，第三个节点的加锁可能仍在途
+            assertTrue(templates.stream().filter(t -> handle.token().equals(t.opsForValue().get(key))).count() >= 2);
+            assertNull(other.tryLock(key, 10, TimeUnit.SECONDS));
+            client.unlock(handle);
+            LockHandle next = other.tryLock(key, 1, 10, TimeUnit.SECONDS,
+                    new SpinWaitConfig(5, 0, SpinWaitStrategy.FIXED, TimeUnit.MILLISECONDS));
+            assertNotNull(next);
+            other.unlock(next);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (templates.stream().anyMatch(t -> Boolean.TRUE.equals(t.hasKey(key))) && System.nanoTime() < deadline) {
+                Thread.sleep(5);
+            }
+            for (StringRedisTemplate template : templates) {
+                assertFalse(Boolean.TRUE.equals(template.hasKey(key)), key);
+            }
+        } finally {
+            other.shutdown();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.chengtang.sample;
+
+import com.github.chengtang.dlock.annotation.SpinWaitStrategy;
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.LockObserver;
+import com.github.chengtang.dlock.core.SpinWaitConfig;
+import com.github.chengtang.dlock.redis.LockReleaseNotifier;
+import com.github.chengtang.dlock.redis.RedisDistributedLockClient;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(properties = {
+        "spring.data.redis.host=127.0.0.1",
+        "spring.data.redis.port=6379"
+})
+class ReleaseNotifyIntegrationTest {
+    private static final SpinWaitConfig SPIN = new SpinWaitConfig(10, 0, SpinWaitStrategy.FIXED, TimeUnit.MILLISECONDS);
+
+    @Autowired
+    StringRedisTemplate template;
+
+    @Test
+    void releaseOnOtherInstanceWakesWaiterThroughKeyChannel() throws Exception {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(template.getRequiredConnectionFactory());
+        container.afterPropertiesSet();
+        container.start();
+        // 兜底超时远大于期望的唤醒延迟，只有收到 Redis 推送的释放消息才能及时获取
+        LockReleaseNotifier waiting = new LockReleaseNotifier("dlock:release:", 10, TimeUnit.SECONDS);
+        waiting.setListenerContainer(container);
+        LockReleaseNotifier holding = new LockReleaseNotifier("dlock:release:", 10, TimeUnit.SECONDS);
+        RedisDistributedLockClient waiter = new RedisDistributedLockClient(template, waiting, null, LockObserver.NOOP);
+        RedisDistributedLockClient holder = new RedisDistributedLockClient(template, holding, null, LockObserver.NOOP);
+        String key = "notify:it:" + System.nanoTime();
+        try {
+            LockHandle held = holder.tryLock(key, 30, TimeUnit.SECONDS);
+            assertNotNull(held);
+            CompletableFuture<LockHandle> waited = CompletableFuture.supplyAsync(
+                    () -> waiter.tryLock(key, 20, 30, TimeUnit.SECONDS, SPIN));
+            // 首次尝试失败后等待者订阅该 key 的频道
+            Thread.sleep(500);
+            assertFalse(waited.isDone());
+            long released = System.nanoTime();
+            holder.unlock(held);
+            LockHandle handle = waited.get(5, TimeUnit.SECONDS);
+            long wokenMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - released);
+            assertNotNull(handle);
+            assertTrue(wokenMillis < 2000, "woken after " + wokenMillis + "ms");
+            waiter.unlock(handle);
+        } finally {
+            container.stop();
+            container.destroy();
+            template.delete(key);
+        }
+    }
+}
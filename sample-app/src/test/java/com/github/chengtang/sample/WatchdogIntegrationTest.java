@@ -0,0 +1,126 @@
+package com.github.chengtang.sample;
+
+import com.github.chengtang.dlock.core.LockHandle;
+import com.github.chengtang.dlock.core.LockObserver;
+import com.github.chengtang.dlock.redis.LockWatchdog;
+import com.github.chengtang.dlock.redis.RedisDistributedLockClient;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 以 300ms 租约、100ms 续期间隔的看门狗验证续期脚本
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.NONE)
+@TestPropertySource(properties = {
+        "spring.data.redis.host=127.0.0.1",
+        "spring.data.redis.port=6379"
+})
+class WatchdogIntegrationTest {
+    private static final long LEASE_MILLIS = 300;
+
+    @Autowired
+    StringRedisTemplate template;
+
+    @Test
+    void renewsBeyondLeaseUntilUnlock() throws Exception {
+        LockWatchdog watchdog = new LockWatchdog(template, LEASE_MILLIS, 100, 500);
+        RedisDistributedLockClient client = new RedisDistributedLockClient(template, null, watchdog, LockObserver.NOOP);
+        try {
+            String key = "watchdog:it:" + System.nanoTime();
+            LockHandle handle = client.tryLock(key, -1, TimeUnit.MILLISECONDS);
+            assertNotNull(handle);
+            assertEquals(1, watchdog.watching());
+            Thread.sleep(LEASE_MILLIS * 3);
+            assertEquals(handle.token(), template.opsForValue().get(key));
+            Long pttl = template.getExpire(key, TimeUnit.MILLISECONDS);
+            assertTrue(pttl != null && pttl > 0 && pttl <= LEASE_MILLIS, "pttl=" + pttl);
+            client.unlock(handle);
+            assertEquals(0, watchdog.watching());
+            assertFalse(Boolean.TRUE.equals(template.hasKey(key)));
+        } finally {
+            watchdog.shutdown();
+        }
+    }
+
+    @Test
+    void leaseWithChangedTokenDropped() throws Exception {
+        LockWatchdog watchdog = new LockWatchdog(template, LEASE_MILLIS, 100, 500);
+        RedisDistributedLockClient client = new RedisDistributedLockClient(template, null, watchdog, LockObserver.NOOP);
+        try {
+            String key = "watchdog:it:" + System.nanoTime();
+            assertNotNull(client.tryLock(key, -1, TimeUnit.MILLISECONDS));
+            // 租约丢失后被他人获取
+            template.opsForValue().set(key, "other", 10, TimeUnit.SECONDS);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(2);
+            while (watchdog.watching() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertEquals(0, watchdog.watching());
+            assertEquals("other", template.opsForValue().get(key));
+            assertTrue(template.getExpire(key, TimeUnit.MILLISECONDS) > LEASE_MILLIS);
+        } finally {
+            watchdog.shutdown();
+        }
+    }
+
+    @Test
+    void crossSlotBatchFallsBackToPerSlot() throws Exception {
+        CrossSlotRejectingTemplate cluster = new CrossSlotRejectingTemplate(template);
+        LockWatchdog watchdog = new LockWatchdog(cluster, LEASE_MILLIS, 100, 500);
+        RedisDistributedLockClient client = new RedisDistributedLockClient(cluster, null, watchdog, LockObserver.NOOP);
+        List<String> keys = new ArrayList<>();
+        try {
+            for (int i = 0; i < 20; i++) {
+                String key = "watchdog:it:slot:" + System.nanoTime() + ":" + i;
+                keys.add(key);
+                assertNotNull(client.tryLock(key, -1, TimeUnit.MILLISECONDS));
+            }
+            Thread.sleep(LEASE_MILLIS * 3);
+            assertTrue(cluster.rejected.get() > 0);
+            assertEquals(keys.size(), watchdog.watching());
+            for (String key : keys) {
+                assertTrue(Boolean.TRUE.equals(template.hasKey(key)), key);
+            }
+        } finally {
+            watchdog.shutdown();
+            template.delete(keys);
+        }
+    }
+
+    /**
+     * 模拟 Redis Cluster：脚本的 key 不在同一 slot 时拒绝执行
+     */
+    private static final class CrossSlotRejectingTemplate extends StringRedisTemplate {
+        private final AtomicInteger rejected = new AtomicInteger();
+
+        private CrossSlotRejectingTemplate(StringRedisTemplate delegate) {
+            super(delegate.getRequiredConnectionFactory());
+        }
+
+        @Override
+        public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            for (String key : keys) {
+                if (ClusterSlotHashUtil.calculateSlot(key) != ClusterSlotHashUtil.calculateSlot(keys.get(0))) {
+                    rejected.incrementAndGet();
+                    throw new IllegalStateException("CROSSSLOT Keys in request don't hash to the same slot");
+                }
+            }
+            return super.execute(script, keys, args);
+        }
+    }
+}